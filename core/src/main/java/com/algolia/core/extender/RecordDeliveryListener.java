@@ -0,0 +1,29 @@
+package com.algolia.core.extender;
+
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import org.osgi.annotation.versioning.ProviderType;
+
+/**
+ * Notified by the code sending records to Algolia, so that extenders remembering what the index holds, e.g. to
+ * drop unchanged records, only rely on records Algolia actually acknowledged.
+ *
+ * @since 3.6.0
+ */
+@ProviderType
+public interface RecordDeliveryListener {
+
+    /**
+     * Called once Algolia acknowledged the records of a request, as they were sent.
+     *
+     * @param request the delivered request
+     */
+    void delivered(AlgoliaRequest request);
+
+    /**
+     * Called once a record and its split records were deleted from the index, e.g. after the page or asset was
+     * deactivated, deleted or moved.
+     *
+     * @param objectID the objectID of the record, split records are keyed by it followed by {@code _} and their index
+     */
+    void deleted(String objectID);
+}
@@ -0,0 +1,130 @@
+package com.algolia.core.extender.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of text lines persisting an in-memory store, replayed and compacted when the store is created.
+ * <p>
+ * The writer is kept open between appends and flushed after every line. Without a file every operation is a no-op,
+ * for stores kept in memory only. Once closed, appends are dropped.
+ *
+ * @since 3.6.0
+ */
+final class AppendOnlyJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Path file;
+
+    private final String name;
+
+    private BufferedWriter writer;
+
+    private boolean closed;
+
+    /**
+     * @param file the journal file, may be null for an in-memory only store
+     * @param name the name of the journal in log messages
+     */
+    AppendOnlyJournal(File file, String name) {
+        this.file = file == null ? null : file.toPath();
+        this.name = name;
+    }
+
+    /**
+     * Passes every line of the journal to the given handler, in the order they were appended.
+     *
+     * @return false if the journal could not be read completely, the store should start empty then
+     */
+    boolean replay(Consumer<String> handler) {
+        if (this.file == null || !Files.isRegularFile(this.file)) {
+            return true;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handler.accept(line);
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not read {}: {}, starting empty.", this.name, this.file, ex);
+            return false;
+        }
+    }
+
+    synchronized void append(String line) {
+        if (this.file == null || this.closed) {
+            return;
+        }
+        try {
+            if (this.writer == null) {
+                this.writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            this.writer.write(line);
+            this.writer.newLine();
+            this.writer.flush();
+        } catch (IOException ex) {
+            LOGGER.warn("Could not write to {}: {}", this.name, this.file, ex);
+            this.closeWriter();
+        }
+    }
+
+    /**
+     * Replaces the journal by the given lines, the live entries of the store.
+     */
+    synchronized void compact(Stream<String> lines) {
+        if (this.file == null || this.closed) {
+            return;
+        }
+        this.closeWriter();
+        Path compacted = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (BufferedWriter compactedWriter = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                compactedWriter.write(iterator.next());
+                compactedWriter.newLine();
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not compact {}: {}", this.name, this.file, ex);
+            return;
+        }
+        try {
+            Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not replace {}: {}", this.name, this.file, ex);
+        }
+    }
+
+    synchronized void close() {
+        this.closed = true;
+        this.closeWriter();
+    }
+
+    private void closeWriter() {
+        if (this.writer == null) {
+            return;
+        }
+        try {
+            this.writer.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Could not close {}: {}", this.name, this.file, ex);
+        }
+        this.writer = null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.algolia.core.extender.internal;
+
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.dam.api.Rendition;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Helpers dealing with the original binary of an {@link Asset}.
+ *
+ * @since 3.6.0
+ */
+final class AssetBinaries {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private AssetBinaries() {
+    }
+
+    /**
+     * Returns the SHA-1 hash of the original binary of the given asset.
+     * <p>
+     * The {@code dam:sha1} metadata written by the DAM Update Asset workflow is used when present, otherwise the
+     * hash is computed by streaming the original rendition.
+     *
+     * @param asset the asset
+     * @return the hex encoded hash or null if the asset has no readable original
+     */
+    static String hash(Asset asset) {
+        String sha1 = asset.getMetadataValue(DamConstants.PN_SHA1);
+        if (StringUtils.isNotEmpty(sha1)) {
+            return sha1;
+        }
+        Rendition original = asset.getOriginal();
+        if (original == null) {
+            return null;
+        }
+        try (InputStream stream = original.getStream()) {
+            return stream == null ? null : DigestUtils.sha1Hex(stream);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not compute hash of the original binary of asset: {}", asset.getPath(), ex);
+            return null;
+        }
+    }
+}
@@ -6,22 +6,43 @@ import com.algolia.connector.core.domain.AlgoliaRecord;
 import com.algolia.connector.core.domain.AlgoliaRequest;
 import com.algolia.connector.core.extender.AlgoliaAssetRequestExtender;
 import com.algolia.connector.core.util.AlgoliaUtil;
+import com.algolia.core.reindex.internal.ReindexRequests;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.replication.ReplicationAction;
+import com.day.cq.replication.ReplicationActionType;
 import opennlp.tools.tokenize.WhitespaceTokenizer;
+import opennlp.tools.util.Span;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.metatype.annotations.AttributeDefinition;
 import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.time.Clock;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.algolia.connector.core.AlgoliaConstants.ATTRIBUTE_PATH;
 
@@ -31,8 +52,16 @@ import static com.algolia.connector.core.AlgoliaConstants.ATTRIBUTE_PATH;
  * @author Rakesh Kumar
  * @since 3.5.0
  */
-@Component(name = "Algolia PDF Text Extractor")
-public class DefaultAlgoliaPdfTextExtractor implements AlgoliaAssetRequestExtender {
+@Component(
+        name = "Algolia PDF Text Extractor",
+        service = {
+                AlgoliaAssetRequestExtender.class,
+                EventHandler.class,
+                PdfTextSegments.class
+        },
+        property = EventConstants.EVENT_TOPIC + "=" + ReplicationAction.EVENT_TOPIC
+)
+public class DefaultAlgoliaPdfTextExtractor implements AlgoliaAssetRequestExtender, EventHandler, PdfTextSegments {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
@@ -42,86 +71,501 @@ public class DefaultAlgoliaPdfTextExtractor implements AlgoliaAssetRequestExtend
 
     private static final String ATTRIBUTE_PDF_TEXT = "pdfText";
 
-    private final PdfTextExtractor extractor;
+    private static final String ATTRIBUTE_PDF_SUMMARY = "pdfSummary";
+
+    private static final String SEGMENT_STORE_DISABLED = "The PDF text segment store is disabled.";
+
+    private static final String NEGATIVE_CACHE_JOURNAL = "pdf-text-negative-cache.journal";
+
+    private static final String METRIC_NEGATIVE_CACHE = "algolia.pdfTextExtractor.negativeCache.";
+
+    private static final String FINGERPRINT_JOURNAL = "pdf-text-extractor-fingerprints.journal";
+
+    private static final String METRIC_FINGERPRINT = "algolia.pdfTextExtractor.fingerprint.";
+
+    private static final String METRIC_SEGMENTS = "algolia.pdfTextExtractor.segments.";
+
+    static final String SEGMENTS_DIRECTORY = "pdf-text-segments";
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    /**
+     * Segments are memory mapped as a whole, which is limited to 2 GB.
+     */
+    private static final long MAX_SEGMENT_SIZE = 1024;
+
+    private static final double MAX_SEGMENT_GARBAGE_RATIO = 0.5;
 
-    private final int wordSizeLimit;
+    private final PdfTextExtractor extractor;
 
     private final ResourceResolverFactory resolverFactory;
 
+    private final BundleContext bundleContext;
+
+    private final Counter negativeCacheHits;
+
+    private final Counter negativeCacheMisses;
+
+    private final Counter negativeCacheStores;
+
+    private final Counter fingerprintHits;
+
+    private final Counter fingerprintMisses;
+
+    private final Counter segmentHits;
+
+    /**
+     * Current configuration, replaced as a whole on modification. Every request works on the snapshot it read first.
+     */
+    private volatile Settings settings;
+
     @Activate
     public DefaultAlgoliaPdfTextExtractor(@Reference ResourceResolverFactory resolverFactory,
                                           @Reference PdfTextExtractor extractor,
+                                          @Reference MetricsService metricsService,
+                                          BundleContext bundleContext,
                                           Config config) {
         this.resolverFactory = resolverFactory;
         this.extractor = extractor;
-        this.wordSizeLimit = config.word_size_limit();
+        this.bundleContext = bundleContext;
+        this.negativeCacheHits = metricsService.counter(METRIC_NEGATIVE_CACHE + "hits");
+        this.negativeCacheMisses = metricsService.counter(METRIC_NEGATIVE_CACHE + "misses");
+        this.negativeCacheStores = metricsService.counter(METRIC_NEGATIVE_CACHE + "stores");
+        this.fingerprintHits = metricsService.counter(METRIC_FINGERPRINT + "hits");
+        this.fingerprintMisses = metricsService.counter(METRIC_FINGERPRINT + "misses");
+        this.segmentHits = metricsService.counter(METRIC_SEGMENTS + "hits");
+        this.settings = new Settings(config, null, bundleContext);
+    }
+
+    /**
+     * Applies a new configuration in place, keeping the chunker pool unless the tokenization or parallelism changed,
+     * and the negative cache, the fingerprints and the segment store while they stay enabled.
+     */
+    @Modified
+    protected synchronized void modified(Config config) {
+        Settings previous = this.settings;
+        this.settings = new Settings(config, previous, this.bundleContext);
+        if (this.settings.chunker != previous.chunker) {
+            previous.chunker.retire();
+        }
+        if (previous.negativeCache != null && this.settings.negativeCache == null) {
+            previous.negativeCache.close();
+        }
+        if (previous.fingerprints != null && this.settings.fingerprints == null) {
+            previous.fingerprints.close();
+        }
+        if (previous.segments != null && this.settings.segments == null) {
+            previous.segments.close();
+        }
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        this.settings.chunker.shutdown();
+        if (this.settings.negativeCache != null) {
+            this.settings.negativeCache.close();
+        }
+        if (this.settings.fingerprints != null) {
+            this.settings.fingerprints.close();
+        }
+        if (this.settings.segments != null) {
+            this.settings.segments.close();
+        }
     }
 
     @Override
     public void augmentAlgoliaRequest(AlgoliaRequest request, Asset asset) {
         if (StringUtils.equals(asset.getMimeType(), MIME_TYPE_PDF)) {
-            LOGGER.info("Encountered PDF asset, extracting text from it.");
-            String text = this.extractor.extractText(asset);
-            if (StringUtils.isNotEmpty(text)) {
-                List<AlgoliaRecord> algoliaRecords = request.getAlgoliaRecords();
-                AlgoliaRecord originalRecord = algoliaRecords.get(0);
-                String originalObjectID = originalRecord.getObjectID();
-                String[] tokens = WhitespaceTokenizer.INSTANCE.tokenize(text);
-                if (tokens.length <= this.wordSizeLimit) {
-                    originalRecord.addAttribute(ATTRIBUTE_PDF_TEXT, text);
+            Settings current = this.settings;
+            ExtenderExecution execution = ExtenderExecution.begin(this.getClass(), asset.getPath(),
+                    current.eventThreshold).mimeType(MIME_TYPE_PDF);
+            try {
+                String hash = current.negativeCache != null || current.fingerprints != null
+                        || current.segments != null
+                        ? AssetBinaries.hash(asset)
+                        : null;
+                if (current.fingerprints != null && hash != null) {
+                    this.addPdfTextUnlessUnchanged(current, request, asset, hash, execution);
                 } else {
-                    this.handleWords(tokens, originalRecord);
-                    // Split the record of overall size is over the threshold.
-                    if (text.length() > RECORD_SIZE_LIMIT) {
-                        int index = 0;
-                        for (Map.Entry<String, Object> entry : originalRecord.entrySet()) {
-                            String key = entry.getKey();
-                            if (StringUtils.startsWith(key, ATTRIBUTE_PDF_TEXT)) {
-                                String parentObjectID = originalRecord.getObjectID();
-                                AlgoliaRecord algoliaRecord = new AlgoliaRecord(parentObjectID + "_" + index);
-                                algoliaRecord.addAttribute(ATTRIBUTE_PDF_TEXT, entry.getValue());
-                                algoliaRecord.addAttribute(ATTRIBUTE_PATH, asset.getPath());
-                                request.addRecord(algoliaRecord);
-                                index++;
-                            }
-                        }
-                        request.getAlgoliaRecords()
-                                .removeIf(algoliaRecord -> algoliaRecord.getObjectID().equals(originalObjectID));
-                        AlgoliaUtil.handleSplitRecordCount(request.getAlgoliaRecords().size(), asset.getPath(),
-                                AlgoliaExceptionHandler.SplitRecordAction.ADD, this.resolverFactory);
-                        request.setPdfTextSplittingAttempted(true);
-                    }
+                    this.addPdfText(current, request, asset, hash, execution);
                 }
+            } finally {
+                execution.split(request.isPdfTextSplittingAttempted()).end();
+            }
+        }
+    }
+
+    /**
+     * Forgets the stored text of deactivated and deleted assets, so that a rebuild does not bring them back.
+     */
+    @Override
+    public void handleEvent(Event event) {
+        PdfTextSegmentStore segments = this.settings.segments;
+        ReplicationAction action = ReplicationAction.fromEvent(event);
+        if (segments != null && action != null && (action.getType() == ReplicationActionType.DEACTIVATE
+                || action.getType() == ReplicationActionType.DELETE)) {
+            for (String path : action.getPaths()) {
+                segments.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Replays the attributes produced for the same binary and configuration, or adds and records them.
+     * Results which had to be split into several records are not recorded, neither are empty results while the
+     * negative cache is enabled.
+     */
+    private void addPdfTextUnlessUnchanged(Settings current, AlgoliaRequest request, Asset asset, String hash,
+                                           ExtenderExecution execution) {
+        AlgoliaRecord originalRecord = request.getAlgoliaRecords().get(0);
+        String digest = new ExtenderInputs().binary(hash).config(current.fingerprintConfig).digest();
+        Map<String, Object> attributes = current.fingerprints.replay(asset.getPath(), digest);
+        // A text missing from the segment store is extracted once more to be stored, the replay holds no chunks.
+        if (attributes != null && (attributes.isEmpty() || current.segments == null
+                || current.segments.contains(asset.getPath(), hash))) {
+            this.fingerprintHits.increment();
+            execution.cacheOutcome(ExtenderExecution.CACHE_HIT);
+            attributes.forEach(originalRecord::addAttribute);
+            return;
+        }
+        this.fingerprintMisses.increment();
+        Map<String, Object> before = new HashMap<>(originalRecord);
+        this.addPdfText(current, request, asset, hash, execution);
+        if (request.isPdfTextSplittingAttempted()) {
+            return;
+        }
+        Map<String, Object> attributesAdded = ExtenderFingerprintStore.changedAttributes(before, originalRecord);
+        // Binaries without text are left to the negative cache, which retries them after their TTL.
+        if (!attributesAdded.isEmpty() || current.negativeCache == null) {
+            current.fingerprints.record(asset.getPath(), digest, attributesAdded);
+        }
+    }
+
+    private void addPdfText(Settings current, AlgoliaRequest request, Asset asset, String hash,
+                            ExtenderExecution execution) {
+        PdfTextSegmentStore.Entry stored = current.segments != null && hash != null
+                ? current.segments.get(asset.getPath(), hash)
+                : null;
+        String text;
+        if (stored != null) {
+            // The stored text is laid out again with the current configuration.
+            this.segmentHits.increment();
+            execution.cacheOutcome(ExtenderExecution.CACHE_HIT);
+            text = stored.text;
+        } else {
+            text = this.extractText(current, asset, hash, execution);
+        }
+        if (StringUtils.isNotEmpty(text)) {
+            this.addPdfText(current, request, asset.getPath(), text, execution);
+            if (stored == null && current.segments != null && hash != null) {
+                current.segments.append(asset.getPath(), hash, text);
             }
         }
     }
 
-    private void handleWords(String[] tokens, AlgoliaRecord record) {
-        int length = tokens.length;
-        int numOfFullPartitions = length / this.wordSizeLimit;
-        int lastPartition = length % this.wordSizeLimit;
-        int partitionSize = numOfFullPartitions;
-        if (lastPartition > 0) {
-            partitionSize += 1;
+    /**
+     * Adds the summary or the chunks of the given text to the request.
+     */
+    private void addPdfText(Settings current, AlgoliaRequest request, String path, String text,
+                            ExtenderExecution execution) {
+        execution.extractedChars(text.length());
+        AlgoliaRecord originalRecord = request.getAlgoliaRecords().get(0);
+        boolean parallel = text.length() >= current.parallelThreshold;
+        Span[] tokens = current.chunker.tokenize(text, parallel);
+        List<String> summary = current.summarizer != null && !current.isFullTextPath(path)
+                ? current.summarizer.summarize(text, tokens)
+                : Collections.emptyList();
+        if (!summary.isEmpty()) {
+            // Keyphrases replace the full text, the record never needs to be split.
+            originalRecord.addAttribute(ATTRIBUTE_PDF_SUMMARY, summary);
+        } else {
+            // Also keeps texts without any keyphrase searchable.
+            String[] chunks = tokens.length <= current.wordSizeLimit
+                    ? new String[]{text}
+                    : current.chunker.partition(text, tokens, current.wordSizeLimit, parallel);
+            execution.chunks(chunks.length);
+            this.addChunks(current, request, path, chunks, text.length());
         }
-        int rangeFrom = 0;
-        String[][] partitionedArrays = new String[partitionSize][];
-        for (int i = 0; i < numOfFullPartitions; i++) {
-            partitionedArrays[i] = Arrays.copyOfRange(tokens, rangeFrom, (rangeFrom + this.wordSizeLimit));
-            rangeFrom = rangeFrom + this.wordSizeLimit;
+    }
+
+    /**
+     * Adds the chunks of a text to the record, splitting it if the text is over the record size limit.
+     */
+    private void addChunks(Settings current, AlgoliaRequest request, String path, String[] chunks, int textLength) {
+        AlgoliaRecord originalRecord = request.getAlgoliaRecords().get(0);
+        String originalObjectID = originalRecord.getObjectID();
+        if (chunks.length == 1) {
+            originalRecord.addAttribute(ATTRIBUTE_PDF_TEXT, chunks[0]);
+            return;
         }
-        if (lastPartition > 0) {
-            partitionedArrays[partitionedArrays.length - 1] = Arrays.copyOfRange(tokens, rangeFrom, (rangeFrom + lastPartition));
+        current.handleWords(chunks, originalRecord);
+        // Split the record of overall size is over the threshold.
+        if (textLength > RECORD_SIZE_LIMIT) {
+            int index = 0;
+            for (String chunk : chunks) {
+                AlgoliaRecord algoliaRecord = new AlgoliaRecord(originalObjectID + "_" + index);
+                algoliaRecord.addAttribute(ATTRIBUTE_PDF_TEXT, chunk);
+                algoliaRecord.addAttribute(ATTRIBUTE_PATH, path);
+                request.addRecord(algoliaRecord);
+                index++;
+            }
+            request.getAlgoliaRecords()
+                    .removeIf(algoliaRecord -> algoliaRecord.getObjectID().equals(originalObjectID));
+            AlgoliaUtil.handleSplitRecordCount(request.getAlgoliaRecords().size(), path,
+                    AlgoliaExceptionHandler.SplitRecordAction.ADD, this.resolverFactory);
+            request.setPdfTextSplittingAttempted(true);
         }
-        int index = 1;
-        for (String[] partitionedArray : partitionedArrays) {
-            StringBuilder sentenceBuilder = new StringBuilder();
-            for (String word : partitionedArray) {
-                sentenceBuilder.append(word).append(" ");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.settings.segments != null;
+    }
+
+    @Override
+    public long rebuild(Consumer<AlgoliaRequest> consumer, BooleanSupplier stopped) {
+        Settings current = this.settings;
+        PdfTextSegmentStore segments = segmentStore(current);
+        long count = 0;
+        for (String path : segments.paths()) {
+            if (stopped.getAsBoolean()) {
+                break;
+            }
+            // Entries removed or unreadable meanwhile are skipped, deletions are tracked by the event handler.
+            PdfTextSegmentStore.Entry stored = segments.get(path);
+            if (stored == null) {
+                LOGGER.debug("Skipping PDF text of: {}, it is no longer stored.", path);
+                continue;
             }
-            record.addAttribute(ATTRIBUTE_PDF_TEXT + index, sentenceBuilder.toString().trim());
-            index++;
+            AlgoliaRequest request = ReindexRequests.create(null, path);
+            this.addPdfText(current, request, path, stored.text, ExtenderExecution.NOOP);
+            consumer.accept(request);
+            count++;
         }
+        return count;
+    }
+
+    @Override
+    public void compact() throws IOException {
+        segmentStore(this.settings).compact();
+    }
+
+    @Override
+    public int getEntries() {
+        PdfTextSegmentStore segments = this.settings.segments;
+        return segments != null ? segments.size() : 0;
+    }
+
+    @Override
+    public int getSegments() {
+        PdfTextSegmentStore segments = this.settings.segments;
+        return segments != null ? segments.segmentCount() : 0;
+    }
+
+    @Override
+    public double getGarbageRatio() {
+        PdfTextSegmentStore segments = this.settings.segments;
+        return segments != null ? segments.garbageRatio() : 0;
+    }
+
+    /**
+     * Returns the segment store, null if it is disabled.
+     */
+    PdfTextSegmentStore getSegmentStore() {
+        return this.settings.segments;
+    }
+
+    private static PdfTextSegmentStore segmentStore(Settings current) {
+        if (current.segments == null) {
+            throw new IllegalStateException(SEGMENT_STORE_DISABLED);
+        }
+        return current.segments;
+    }
+
+    /**
+     * Extracts the text of the given PDF asset, short-circuiting binaries known to have no text or to fail.
+     */
+    private String extractText(Settings current, Asset asset, String hash, ExtenderExecution execution) {
+        execution.cacheOutcome(current.negativeCache != null || current.fingerprints != null
+                ? ExtenderExecution.CACHE_MISS
+                : ExtenderExecution.CACHE_DISABLED);
+        if (current.negativeCache != null && hash != null) {
+            PdfTextNegativeCache.Outcome outcome = current.negativeCache.get(hash);
+            if (outcome != null) {
+                LOGGER.debug("Skipping PDF asset: {}, its binary is cached as: {}", asset.getPath(), outcome);
+                this.negativeCacheHits.increment();
+                execution.cacheOutcome(ExtenderExecution.CACHE_NEGATIVE_HIT);
+                return null;
+            }
+            this.negativeCacheMisses.increment();
+        }
+        LOGGER.info("Encountered PDF asset, extracting text from it.");
+        String text;
+        try {
+            text = this.extractor.extractText(asset);
+        } catch (RuntimeException ex) {
+            this.cacheOutcome(current, hash, PdfTextNegativeCache.Outcome.FAILED);
+            throw ex;
+        }
+        if (StringUtils.isEmpty(text)) {
+            this.cacheOutcome(current, hash, PdfTextNegativeCache.Outcome.NO_TEXT);
+        }
+        return text;
+    }
+
+    private void cacheOutcome(Settings current, String hash, PdfTextNegativeCache.Outcome outcome) {
+        if (current.negativeCache != null && hash != null) {
+            current.negativeCache.put(hash, outcome);
+            this.negativeCacheStores.increment();
+        }
+    }
+
+    /**
+     * Immutable snapshot of the configuration together with the state derived from it.
+     */
+    private static final class Settings {
+
+        private final int wordSizeLimit;
+
+        private final AttributeMode attributeMode;
+
+        private final boolean emitNumberedAttributes;
+
+        private final boolean scriptAwareTokenization;
+
+        private final int parallelism;
+
+        private final int parallelThreshold;
+
+        private final PdfTextChunker chunker;
+
+        private final PdfKeyphraseSummarizer summarizer;
+
+        private final List<Pattern> fullTextPaths;
+
+        private final PdfTextNegativeCache negativeCache;
+
+        private final ExtenderFingerprintStore fingerprints;
+
+        private final PdfTextSegmentStore segments;
+
+        private final Object[] fingerprintConfig;
+
+        private final long eventThreshold;
+
+        /**
+         * @param config        the configuration
+         * @param previous      the snapshot replaced by this one, its state is taken over where still valid
+         * @param bundleContext the context providing the journal files
+         */
+        private Settings(Config config, Settings previous, BundleContext bundleContext) {
+            this.wordSizeLimit = config.word_size_limit();
+            this.attributeMode = config.attribute_mode();
+            this.emitNumberedAttributes = config.attribute_mode_migration();
+            this.scriptAwareTokenization = config.script_aware_tokenization();
+            this.parallelism = config.parallel_processing_parallelism();
+            this.parallelThreshold = config.parallel_processing_threshold();
+            if (previous != null && previous.scriptAwareTokenization == this.scriptAwareTokenization
+                    && previous.parallelism == this.parallelism) {
+                this.chunker = previous.chunker;
+            } else {
+                this.chunker = new PdfTextChunker(
+                        this.scriptAwareTokenization ? ScriptAwareTokenizer.INSTANCE : WhitespaceTokenizer.INSTANCE,
+                        this.parallelism);
+            }
+            this.summarizer = config.summary_enabled()
+                    ? new PdfKeyphraseSummarizer(config.summary_size(), config.summary_max_length())
+                    : null;
+            this.fullTextPaths = Arrays.stream(config.summary_full_text_paths())
+                    .filter(StringUtils::isNotBlank)
+                    .map(Pattern::compile)
+                    .collect(Collectors.toList());
+            long noTextTtl = TimeUnit.HOURS.toMillis(config.negative_cache_no_text_ttl());
+            long failedTtl = TimeUnit.HOURS.toMillis(config.negative_cache_failed_ttl());
+            if (!config.negative_cache_enabled()) {
+                this.negativeCache = null;
+            } else if (previous != null && previous.negativeCache != null) {
+                // A single cache owns the journal, it takes over the new TTLs.
+                this.negativeCache = previous.negativeCache;
+                this.negativeCache.setTtls(noTextTtl, failedTtl);
+            } else {
+                this.negativeCache = new PdfTextNegativeCache(bundleContext.getDataFile(NEGATIVE_CACHE_JOURNAL),
+                        noTextTtl, failedTtl, Clock.systemUTC());
+            }
+            if (!config.fingerprint_enabled()) {
+                this.fingerprints = null;
+            } else if (previous != null && previous.fingerprints != null) {
+                // Fingerprints include the configuration, entries recorded with other settings simply miss.
+                this.fingerprints = previous.fingerprints;
+                this.fingerprints.setMaxSize(config.fingerprint_max_size() * BYTES_PER_MEGABYTE);
+            } else {
+                this.fingerprints = new ExtenderFingerprintStore(bundleContext.getDataFile(FINGERPRINT_JOURNAL),
+                        config.fingerprint_max_size() * BYTES_PER_MEGABYTE);
+            }
+            this.segments = segmentStore(config, previous, bundleContext);
+            // Every setting shaping the produced attributes, a change invalidates the recorded fingerprints.
+            this.fingerprintConfig = new Object[]{config.word_size_limit(), config.script_aware_tokenization(),
+                    config.attribute_mode(), config.attribute_mode_migration(), config.summary_enabled(),
+                    config.summary_size(), config.summary_max_length(), config.summary_full_text_paths()};
+            this.eventThreshold = config.event_threshold();
+        }
+
+        private static PdfTextSegmentStore segmentStore(Config config, Settings previous,
+                                                        BundleContext bundleContext) {
+            if (!config.segment_store_enabled()) {
+                return null;
+            }
+            long segmentSize = Math.min(config.segment_size(), MAX_SEGMENT_SIZE) * BYTES_PER_MEGABYTE;
+            if (previous != null && previous.segments != null) {
+                previous.segments.setSegmentSize(segmentSize);
+                return previous.segments;
+            }
+            try {
+                PdfTextSegmentStore segments = new PdfTextSegmentStore(
+                        bundleContext.getDataFile(SEGMENTS_DIRECTORY), segmentSize);
+                if (segments.garbageRatio() > MAX_SEGMENT_GARBAGE_RATIO) {
+                    segments.compact();
+                }
+                return segments;
+            } catch (IOException ex) {
+                LOGGER.error("Could not open the PDF text segment store, it is disabled.", ex);
+                return null;
+            }
+        }
+
+        private boolean isFullTextPath(String path) {
+            return this.fullTextPaths.stream().anyMatch(pattern -> pattern.matcher(path).matches());
+        }
+
+        private void handleWords(String[] chunks, AlgoliaRecord record) {
+            if (this.attributeMode == AttributeMode.ARRAY) {
+                record.addAttribute(ATTRIBUTE_PDF_TEXT, Arrays.asList(chunks));
+                if (!this.emitNumberedAttributes) {
+                    return;
+                }
+            }
+            int index = 1;
+            for (String chunk : chunks) {
+                record.addAttribute(ATTRIBUTE_PDF_TEXT + index, chunk);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Layout of the PDF text chunks within a record which is not split.
+     */
+    public enum AttributeMode {
+
+        /**
+         * One attribute per chunk, named {@code pdfText1..pdfTextN}.
+         */
+        NUMBERED,
+
+        /**
+         * A single {@code pdfText} attribute holding the ordered chunks as an array.
+         */
+        ARRAY
     }
 
     // OCD - processed by BND maven plugin.
@@ -137,5 +581,122 @@ public class DefaultAlgoliaPdfTextExtractor implements AlgoliaAssetRequestExtend
                 description = "Word size limit for extracting text out of PDF."
         )
         int word_size_limit() default 900; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Script Aware Tokenization",
+                description = "Segment the words of scripts which are not separated by spaces (Chinese, Japanese, "
+                        + "Thai, ...) so that the word size limit also applies to them."
+        )
+        boolean script_aware_tokenization() default true; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Attribute Mode",
+                description = "How the chunks of a PDF exceeding the word size limit are stored in a record "
+                        + "which is not split. NUMBERED adds pdfText1..pdfTextN, ARRAY adds a single pdfText array."
+        )
+        AttributeMode attribute_mode() default AttributeMode.NUMBERED; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Attribute Mode Migration",
+                description = "When the ARRAY mode is used, additionally emit the pdfText1..pdfTextN attributes "
+                        + "until the searchable attributes of existing indices have been switched to pdfText."
+        )
+        boolean attribute_mode_migration() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Summary Enabled",
+                description = "Add the top keyphrases of the PDF as pdfSummary instead of its full text, "
+                        + "except for the assets matching the full text paths."
+        )
+        boolean summary_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Summary Size",
+                description = "Maximum number of keyphrases added to pdfSummary."
+        )
+        int summary_size() default 50; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Summary Max Length",
+                description = "Maximum overall length (in characters) of the keyphrases added to pdfSummary."
+        )
+        int summary_max_length() default 2048; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Full Text Paths",
+                description = "Regular expressions matching the asset paths which keep their full text "
+                        + "when the summary is enabled, e.g. /content/dam/manuals/.*"
+        )
+        String[] summary_full_text_paths() default {}; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Parallel Processing Parallelism",
+                description = "Number of worker threads used to tokenize and chunk very large PDF texts. "
+                        + "A value lower than 2 keeps all processing on the indexing thread."
+        )
+        int parallel_processing_parallelism() default 0; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Parallel Processing Threshold",
+                description = "Minimum length (in characters) of the extracted text for it to be processed "
+                        + "in parallel."
+        )
+        int parallel_processing_threshold() default 512 * 1024; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Negative Cache Enabled",
+                description = "Remember PDF binaries which produced no text or failed to be extracted, "
+                        + "so that they are not parsed again until the retry TTL expires."
+        )
+        boolean negative_cache_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Negative Cache No Text TTL",
+                description = "Hours after which a PDF binary without text is extracted again. "
+                        + "0 disables caching of this outcome."
+        )
+        int negative_cache_no_text_ttl() default 168; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Negative Cache Failed TTL",
+                description = "Hours after which a PDF binary which failed to be extracted is extracted again. "
+                        + "0 disables caching of this outcome."
+        )
+        int negative_cache_failed_ttl() default 24; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Fingerprint Enabled",
+                description = "Remember the binary hash and configuration the attributes of each PDF asset were "
+                        + "produced from, and replay them instead of extracting the text again when unchanged."
+        )
+        boolean fingerprint_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Fingerprint Max Size",
+                description = "Maximum size (in megabytes) of the fingerprints and replayed attributes kept, the "
+                        + "least recently used ones are evicted beyond it."
+        )
+        long fingerprint_max_size() default 64; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Event Threshold",
+                description = "Minimum duration (in milliseconds) of the PDF text extractions recorded as JDK "
+                        + "Flight Recorder events while a recording is running. -1 disables the events."
+        )
+        long event_threshold() default 10; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Segment Store Enabled",
+                description = "Append the extracted text of every PDF asset to a local segment store, from "
+                        + "which the PDF records can be rebuilt and reindexed without parsing the PDFs again."
+        )
+        boolean segment_store_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Segment Size",
+                description = "Size (in megabytes, at most 1024) after which a segment is sealed and a new one "
+                        + "started."
+        )
+        long segment_size() default 64; // NOSONAR
     }
 }
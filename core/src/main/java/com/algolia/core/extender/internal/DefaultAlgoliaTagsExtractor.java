@@ -7,12 +7,30 @@ import com.algolia.connector.core.domain.AlgoliaRequest;
 import com.algolia.connector.core.extender.AlgoliaAssetRequestExtender;
 import com.algolia.connector.core.extender.AlgoliaPageRequestExtender;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.tagging.Tag;
+import com.day.cq.tagging.TagManager;
 import com.day.cq.wcm.api.Page;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.framework.BundleContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
 import static com.day.cq.tagging.TagConstants.PN_TAGS;
 
 /**
@@ -30,11 +48,58 @@ import static com.day.cq.tagging.TagConstants.PN_TAGS;
 )
 public class DefaultAlgoliaTagsExtractor implements AlgoliaPageRequestExtender, AlgoliaAssetRequestExtender {
 
+    private static final String FINGERPRINT_JOURNAL = "tags-extractor-fingerprints.journal";
+
+    private static final String METRIC_FINGERPRINT = "algolia.tagsExtractor.fingerprint.";
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private static final String[] TAG_LOCATIONS = {
+            "", JCR_CONTENT, JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER
+    };
+
     private final TagsParserService tagsParserService;
 
+    private final BundleContext bundleContext;
+
+    private final Counter fingerprintHits;
+
+    private final Counter fingerprintMisses;
+
+    /**
+     * Current configuration, replaced as a whole on modification. Every request works on the snapshot it read first.
+     */
+    private volatile Settings settings;
+
     @Activate
-    public DefaultAlgoliaTagsExtractor(@Reference TagsParserService tagsParserService) {
+    public DefaultAlgoliaTagsExtractor(@Reference TagsParserService tagsParserService,
+                                       @Reference MetricsService metricsService,
+                                       BundleContext bundleContext,
+                                       Config config) {
         this.tagsParserService = tagsParserService;
+        this.bundleContext = bundleContext;
+        this.fingerprintHits = metricsService.counter(METRIC_FINGERPRINT + "hits");
+        this.fingerprintMisses = metricsService.counter(METRIC_FINGERPRINT + "misses");
+        this.settings = new Settings(config, null, bundleContext);
+    }
+
+    /**
+     * Applies a new configuration in place, keeping the recorded fingerprints while they stay enabled.
+     */
+    @Modified
+    protected synchronized void modified(Config config) {
+        Settings previous = this.settings;
+        this.settings = new Settings(config, previous, this.bundleContext);
+        if (previous.fingerprints != null && this.settings.fingerprints == null) {
+            previous.fingerprints.close();
+        }
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        if (this.settings.fingerprints != null) {
+            this.settings.fingerprints.close();
+        }
     }
 
     @Override
@@ -49,7 +114,151 @@ public class DefaultAlgoliaTagsExtractor implements AlgoliaPageRequestExtender,
 
     private void addTagsToAlgoliaRecord(AlgoliaRequest request) {
         Resource resource = request.getResource();
+        Settings current = this.settings;
+        ExtenderExecution execution = ExtenderExecution.begin(this.getClass(),
+                resource != null ? resource.getPath() : null, current.eventThreshold);
+        try {
+            this.addTagsToAlgoliaRecord(current, request, resource, execution);
+        } finally {
+            execution.end();
+        }
+    }
+
+    private void addTagsToAlgoliaRecord(Settings current, AlgoliaRequest request, Resource resource,
+                                        ExtenderExecution execution) {
         AlgoliaRecord algoliaRecord = request.getAlgoliaRecords().get(0);
+        if (current.fingerprints == null || resource == null) {
+            execution.cacheOutcome(ExtenderExecution.CACHE_DISABLED);
+            this.tagsParserService.parse(resource, algoliaRecord, PN_TAGS);
+            return;
+        }
+        ExtenderInputs inputs = inputs(resource, current.fingerprintVersion);
+        if (inputs == null) {
+            execution.cacheOutcome(ExtenderExecution.CACHE_MISS);
+            this.tagsParserService.parse(resource, algoliaRecord, PN_TAGS);
+            return;
+        }
+        String digest = inputs.digest();
+        Map<String, Object> attributes = current.fingerprints.replay(resource.getPath(), digest);
+        if (attributes != null) {
+            this.fingerprintHits.increment();
+            execution.cacheOutcome(ExtenderExecution.CACHE_HIT);
+            attributes.forEach(algoliaRecord::addAttribute);
+            return;
+        }
+        this.fingerprintMisses.increment();
+        execution.cacheOutcome(ExtenderExecution.CACHE_MISS);
+        Map<String, Object> before = new HashMap<>(algoliaRecord);
         this.tagsParserService.parse(resource, algoliaRecord, PN_TAGS);
+        current.fingerprints.record(resource.getPath(), digest,
+                ExtenderFingerprintStore.changedAttributes(before, algoliaRecord));
+    }
+
+    /**
+     * The cq:tags of the resource, of its content and of its asset metadata, whichever exist, together with the
+     * modification date and the title paths of every referenced tag, so that renamed or translated tags, or tags
+     * whose parents were renamed, are parsed again.
+     *
+     * @return null if the referenced tags cannot be resolved
+     */
+    private static ExtenderInputs inputs(Resource resource, String fingerprintVersion) {
+        ExtenderInputs inputs = new ExtenderInputs().config(fingerprintVersion);
+        Set<String> tagIds = new TreeSet<>();
+        for (String location : TAG_LOCATIONS) {
+            Resource tagged = location.isEmpty() ? resource : resource.getChild(location);
+            if (tagged != null) {
+                ValueMap properties = tagged.getValueMap();
+                String[] tags = properties.get(PN_TAGS, String[].class);
+                inputs.property(location + "/" + PN_TAGS, tags);
+                if (tags != null) {
+                    tagIds.addAll(Arrays.asList(tags));
+                }
+            }
+        }
+        if (tagIds.isEmpty()) {
+            return inputs;
+        }
+        TagManager tagManager = resource.getResourceResolver().adaptTo(TagManager.class);
+        if (tagManager == null) {
+            return null;
+        }
+        for (String tagId : tagIds) {
+            Tag tag = tagManager.resolve(tagId);
+            if (tag == null) {
+                inputs.reference(tagId);
+            } else {
+                // Locales are not comparable, the title paths are sorted by their string form.
+                inputs.reference(tagId, tag.getLastModified(), tag.getTitlePath(),
+                        tag.getLocalizedTitlePaths().entrySet().stream()
+                                .map(title -> title.getKey() + "=" + title.getValue())
+                                .sorted()
+                                .toArray());
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Immutable snapshot of the configuration together with the state derived from it.
+     */
+    private static final class Settings {
+
+        private final ExtenderFingerprintStore fingerprints;
+
+        private final String fingerprintVersion;
+
+        private final long eventThreshold;
+
+        private Settings(Config config, Settings previous, BundleContext bundleContext) {
+            if (!config.fingerprint_enabled()) {
+                this.fingerprints = null;
+            } else if (previous != null && previous.fingerprints != null) {
+                // Fingerprints include the version, entries recorded with another one simply miss.
+                this.fingerprints = previous.fingerprints;
+                this.fingerprints.setMaxSize(config.fingerprint_max_size() * BYTES_PER_MEGABYTE);
+            } else {
+                this.fingerprints = new ExtenderFingerprintStore(bundleContext.getDataFile(FINGERPRINT_JOURNAL),
+                        config.fingerprint_max_size() * BYTES_PER_MEGABYTE);
+            }
+            this.fingerprintVersion = config.fingerprint_version();
+            this.eventThreshold = config.event_threshold();
+        }
+    }
+
+    // OCD - processed by BND maven plugin.
+
+    @ObjectClassDefinition(
+            name = "DefaultAlgoliaTagsExtractor Configuration",
+            description = "Configuration for DefaultAlgoliaTagsExtractor."
+    )
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Fingerprint Enabled",
+                description = "Replay the tag attributes produced for a page or asset as long as its cq:tags "
+                        + "and the titles of the referenced tags are unchanged, instead of parsing the tags again."
+        )
+        boolean fingerprint_enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Fingerprint Version",
+                description = "Change this value to invalidate all fingerprints, e.g. after the tags parser "
+                        + "has been reconfigured. Renamed and translated tags are detected without it."
+        )
+        String fingerprint_version() default "1"; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Fingerprint Max Size",
+                description = "Maximum size (in megabytes) of the fingerprints and replayed tag attributes kept, "
+                        + "the least recently used ones are evicted beyond it."
+        )
+        long fingerprint_max_size() default 8; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Event Threshold",
+                description = "Minimum duration (in milliseconds) of the tag extractions recorded as JDK "
+                        + "Flight Recorder events while a recording is running. -1 disables the events."
+        )
+        long event_threshold() default 10; // NOSONAR
     }
 }
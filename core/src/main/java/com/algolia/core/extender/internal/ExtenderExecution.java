@@ -0,0 +1,161 @@
+package com.algolia.core.extender.internal;
+
+import jdk.jfr.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes a single extender invocation and emits it as a JDK Flight Recorder event once it ends.
+ * <p>
+ * Nothing is recorded, and hardly anything allocated, unless a recording with the
+ * {@code com.algolia.extensions.ExtenderExecution} event enabled is running and the invocation took at least the
+ * configured threshold. The {@code jdk.jfr} package is an optional import of the bundle, without it every
+ * invocation is described by the {@link #NOOP} instance.
+ *
+ * @since 3.6.0
+ */
+class ExtenderExecution {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // Outcomes of the cache or fingerprint lookups, reported as cacheOutcome.
+
+    static final String CACHE_DISABLED = "disabled";
+
+    static final String CACHE_MISS = "miss";
+
+    static final String CACHE_HIT = "hit";
+
+    static final String CACHE_NEGATIVE_HIT = "negative-hit";
+
+    static final ExtenderExecution NOOP = new ExtenderExecution();
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    ExtenderExecution() {
+    }
+
+    /**
+     * Starts describing an invocation.
+     *
+     * @param extender        the extender class
+     * @param path            the page or asset path
+     * @param thresholdMillis minimum duration of recorded invocations, negative to never record
+     */
+    static ExtenderExecution begin(Class<?> extender, String path, long thresholdMillis) {
+        if (!JFR_AVAILABLE || thresholdMillis < 0) {
+            return NOOP;
+        }
+        return Recorded.start(extender, path, TimeUnit.MILLISECONDS.toNanos(thresholdMillis));
+    }
+
+    ExtenderExecution mimeType(String mimeType) {
+        return this;
+    }
+
+    ExtenderExecution extractedChars(long extractedChars) {
+        return this;
+    }
+
+    ExtenderExecution chunks(int chunks) {
+        return this;
+    }
+
+    ExtenderExecution split(boolean split) {
+        return this;
+    }
+
+    ExtenderExecution cacheOutcome(String cacheOutcome) {
+        return this;
+    }
+
+    void end() {
+        // nothing to record
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ExtenderExecution.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            LOGGER.info("JDK Flight Recorder is not available, extender executions are not recorded.");
+            return false;
+        }
+    }
+
+    /**
+     * Execution backed by an {@link ExtenderExecutionEvent}, kept in its own class so that the event class is only
+     * loaded when JFR is available.
+     */
+    private static final class Recorded extends ExtenderExecution {
+
+        /**
+         * Tells whether a running recording enables the event, without creating one.
+         */
+        private static final EventType EVENT_TYPE = EventType.getEventType(ExtenderExecutionEvent.class);
+
+        private final ExtenderExecutionEvent event;
+
+        private final long thresholdNanos;
+
+        private final long start;
+
+        private Recorded(ExtenderExecutionEvent event, long thresholdNanos) {
+            this.event = event;
+            this.thresholdNanos = thresholdNanos;
+            this.start = System.nanoTime();
+        }
+
+        private static ExtenderExecution start(Class<?> extender, String path, long thresholdNanos) {
+            if (!EVENT_TYPE.isEnabled()) {
+                return NOOP;
+            }
+            ExtenderExecutionEvent event = new ExtenderExecutionEvent();
+            event.extender = extender.getName();
+            event.path = path;
+            event.begin();
+            return new Recorded(event, thresholdNanos);
+        }
+
+        @Override
+        ExtenderExecution mimeType(String mimeType) {
+            this.event.mimeType = mimeType;
+            return this;
+        }
+
+        @Override
+        ExtenderExecution extractedChars(long extractedChars) {
+            this.event.extractedChars = extractedChars;
+            return this;
+        }
+
+        @Override
+        ExtenderExecution chunks(int chunks) {
+            this.event.chunks = chunks;
+            return this;
+        }
+
+        @Override
+        ExtenderExecution split(boolean split) {
+            this.event.split = split;
+            return this;
+        }
+
+        @Override
+        ExtenderExecution cacheOutcome(String cacheOutcome) {
+            this.event.cacheOutcome = cacheOutcome;
+            return this;
+        }
+
+        @Override
+        void end() {
+            this.event.end();
+            if (System.nanoTime() - this.start >= this.thresholdNanos && this.event.shouldCommit()) {
+                this.event.commit();
+            }
+        }
+    }
+}
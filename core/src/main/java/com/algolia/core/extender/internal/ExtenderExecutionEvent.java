@@ -0,0 +1,45 @@
+package com.algolia.core.extender.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event emitted for an extender invocation, see {@link ExtenderExecution}.
+ * <p>
+ * Only loaded when the {@code jdk.jfr} package is available to the bundle.
+ *
+ * @since 3.6.0
+ */
+@Name("com.algolia.extensions.ExtenderExecution")
+@Label("Extender Execution")
+@Description("Invocation of an Algolia request extender for a page or an asset")
+@Category({"Algolia", "Extenders"})
+@StackTrace(false)
+final class ExtenderExecutionEvent extends Event {
+
+    @Label("Extender")
+    String extender;
+
+    @Label("Path")
+    String path;
+
+    @Label("MIME Type")
+    String mimeType;
+
+    @Label("Extracted Characters")
+    long extractedChars;
+
+    @Label("Chunks")
+    int chunks;
+
+    @Label("Split")
+    @Description("Whether the record had to be split into several records")
+    boolean split;
+
+    @Label("Cache Outcome")
+    String cacheOutcome;
+}
@@ -0,0 +1,213 @@
+package com.algolia.core.extender.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Records, per resource, the digest of the {@link ExtenderInputs} an extender saw last and the attributes it
+ * produced from them.
+ * <p>
+ * Entries are kept in memory and written as JSON lines to an {@link AppendOnlyJournal}, so that the fingerprints
+ * survive restarts. The store is bounded by the size of the serialized entries: the least recently used ones are
+ * evicted beyond the maximum size, and the journal is compacted once it holds twice the maximum size.
+ *
+ * @since 3.6.0
+ */
+final class ExtenderFingerprintStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Entries in access order, guarded by this store.
+     */
+    private final LinkedHashMap<String, Fingerprint> fingerprints = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AppendOnlyJournal journal;
+
+    private long maxSize;
+
+    /**
+     * Size of the entries held in memory.
+     */
+    private long size;
+
+    /**
+     * Size of the lines written to the journal since it was last compacted.
+     */
+    private long journalSize;
+
+    /**
+     * @param journal the journal file, may be null for an in-memory only store
+     * @param maxSize maximum size of the serialized entries, in characters
+     */
+    ExtenderFingerprintStore(File journal, long maxSize) {
+        this.journal = new AppendOnlyJournal(journal, "fingerprint journal");
+        this.maxSize = maxSize;
+        this.load();
+    }
+
+    /**
+     * Returns the attributes produced for the given resource if its inputs are unchanged.
+     *
+     * @param path   the resource path
+     * @param digest the digest of the current inputs
+     * @return the attributes to replay or null if they have to be computed
+     */
+    synchronized Map<String, Object> replay(String path, String digest) {
+        Fingerprint fingerprint = this.fingerprints.get(path);
+        return fingerprint != null && fingerprint.digest.equals(digest) ? fingerprint.attributes : null;
+    }
+
+    synchronized void record(String path, String digest, Map<String, Object> attributes) {
+        Fingerprint fingerprint = new Fingerprint(path, digest, Collections.unmodifiableMap(attributes));
+        String line = toLine(fingerprint);
+        if (line == null) {
+            this.remove(path);
+            return;
+        }
+        fingerprint.size = line.length();
+        this.put(fingerprint);
+        if (this.fingerprints.containsKey(path)) {
+            this.journal.append(line);
+            this.journalSize += fingerprint.size;
+            if (this.journalSize > 2 * this.maxSize) {
+                this.compact();
+            }
+        }
+    }
+
+    /**
+     * Changes the maximum size, evicting the least recently used entries beyond it.
+     */
+    synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        this.evict();
+    }
+
+    synchronized int size() {
+        return this.fingerprints.size();
+    }
+
+    /**
+     * Returns the attributes of {@code after} which were added or changed compared to {@code before}.
+     */
+    static Map<String, Object> changedAttributes(Map<String, Object> before, Map<String, Object> after) {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())
+                    || !Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    void close() {
+        this.journal.close();
+    }
+
+    /**
+     * Adds or replaces an entry, entries larger than the maximum size are dropped.
+     */
+    private void put(Fingerprint fingerprint) {
+        this.remove(fingerprint.path);
+        if (fingerprint.size > this.maxSize) {
+            return;
+        }
+        this.fingerprints.put(fingerprint.path, fingerprint);
+        this.size += fingerprint.size;
+        this.evict();
+    }
+
+    private void remove(String path) {
+        Fingerprint removed = this.fingerprints.remove(path);
+        if (removed != null) {
+            this.size -= removed.size;
+        }
+    }
+
+    private void evict() {
+        Iterator<Fingerprint> eldest = this.fingerprints.values().iterator();
+        while (this.size > this.maxSize && eldest.hasNext()) {
+            this.size -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void load() {
+        boolean complete = this.journal.replay(line -> {
+            Map<String, Object> json;
+            try {
+                json = MAPPER.readValue(line, Map.class);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalArgumentException("Invalid fingerprint: " + line, ex);
+            }
+            Fingerprint fingerprint = new Fingerprint((String) json.get("path"), (String) json.get("digest"),
+                    Collections.unmodifiableMap((Map<String, Object>) json.get("attributes")));
+            fingerprint.size = line.length();
+            this.put(fingerprint);
+        });
+        if (!complete) {
+            this.fingerprints.clear();
+            this.size = 0;
+        }
+        this.compact();
+    }
+
+    private void compact() {
+        this.journal.compact(this.fingerprints.values().stream()
+                .map(ExtenderFingerprintStore::toLine)
+                .filter(Objects::nonNull));
+        this.journalSize = this.size;
+    }
+
+    /**
+     * Serializes a fingerprint to a journal line, null if it can not be serialized.
+     */
+    private static String toLine(Fingerprint fingerprint) {
+        try {
+            return MAPPER.writeValueAsString(fingerprint.toJson());
+        } catch (JsonProcessingException ex) {
+            LOGGER.warn("Could not serialize fingerprint of: {}", fingerprint.path, ex);
+            return null;
+        }
+    }
+
+    private static final class Fingerprint {
+
+        private final String path;
+
+        private final String digest;
+
+        private final Map<String, Object> attributes;
+
+        private long size;
+
+        private Fingerprint(String path, String digest, Map<String, Object> attributes) {
+            this.path = path;
+            this.digest = digest;
+            this.attributes = attributes;
+        }
+
+        private Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("path", this.path);
+            json.put("digest", this.digest);
+            json.put("attributes", this.attributes);
+            return json;
+        }
+    }
+}
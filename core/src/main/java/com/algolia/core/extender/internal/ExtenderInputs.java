@@ -0,0 +1,65 @@
+package com.algolia.core.extender.internal;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The inputs an extender depends on for a single resource, e.g. JCR properties, referenced resources, the hash of
+ * a binary or the version of its configuration.
+ * <p>
+ * Inputs are identified by name, their order of declaration does not matter. The resulting {@link #digest()}
+ * changes whenever any input value changes, which lets {@link ExtenderFingerprintStore} replay the attributes
+ * produced for unchanged inputs.
+ *
+ * @since 3.6.0
+ */
+final class ExtenderInputs {
+
+    private final Map<String, String> inputs = new TreeMap<>();
+
+    ExtenderInputs property(String name, Object value) {
+        String text;
+        if (value instanceof Object[]) {
+            text = Arrays.deepToString((Object[]) value);
+        } else {
+            text = String.valueOf(value);
+        }
+        this.inputs.put("property:" + name, text);
+        return this;
+    }
+
+    /**
+     * Values read from a resource the resource refers to, e.g. the titles of a tag.
+     */
+    ExtenderInputs reference(String name, Object... values) {
+        this.inputs.put("reference:" + name, Arrays.deepToString(values));
+        return this;
+    }
+
+    ExtenderInputs binary(String hash) {
+        this.inputs.put("binary", String.valueOf(hash));
+        return this;
+    }
+
+    ExtenderInputs config(Object... values) {
+        this.inputs.put("config", Arrays.deepToString(values));
+        return this;
+    }
+
+    String digest() {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        for (Map.Entry<String, String> input : this.inputs.entrySet()) {
+            digest.update(input.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(input.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+}
@@ -0,0 +1,181 @@
+package com.algolia.core.extender.internal;
+
+import opennlp.tools.util.Span;
+import opennlp.tools.util.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Computes a bounded list of keyphrases summarizing the tokens of an extracted PDF text.
+ * <p>
+ * Terms and two-word phrases are counted in a single pass over the tokens, skipping stop words, numbers and very
+ * short tokens. The minimum term length is counted in code points and depends on the script: a single ideograph
+ * is a term, while Kana, Thai and the other scripts without word spaces need two code points and all other scripts
+ * three. Adjacent tokens of these scripts form phrases without a separator, e.g. ideograph bigrams. Phrases seen
+ * at least twice are weighted above single terms. The highest scoring entries are
+ * returned in descending order, ties being broken by first occurrence so that the result is deterministic.
+ *
+ * @since 3.6.0
+ */
+final class PdfKeyphraseSummarizer {
+
+    private static final int MIN_TERM_LENGTH = 3;
+
+    private static final int MIN_UNSPACED_TERM_LENGTH = 2;
+
+    private static final int MIN_IDEOGRAPHIC_TERM_LENGTH = 1;
+
+    private static final int PHRASE_WEIGHT = 2;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "about", "above", "after", "again", "against", "all", "also", "and", "any", "are", "because", "been",
+            "before", "being", "below", "between", "both", "but", "can", "could", "did", "does", "doing", "down",
+            "during", "each", "few", "for", "from", "further", "had", "has", "have", "having", "her", "here",
+            "hers", "him", "his", "how", "into", "its", "itself", "just", "may", "more", "most", "must", "not",
+            "now", "off", "once", "only", "other", "our", "ours", "out", "over", "own", "same", "shall", "she",
+            "should", "some", "such", "than", "that", "the", "their", "theirs", "them", "then", "there", "these",
+            "they", "this", "those", "through", "too", "under", "until", "upon", "very", "was", "were", "what",
+            "when", "where", "which", "while", "who", "whom", "why", "will", "with", "would", "you", "your",
+            "yours"));
+
+    private final int size;
+
+    private final int maxLength;
+
+    /**
+     * @param size      maximum number of keyphrases
+     * @param maxLength maximum overall length of the keyphrases in characters
+     */
+    PdfKeyphraseSummarizer(int size, int maxLength) {
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @param text   the extracted text
+     * @param tokens the tokens of the text
+     */
+    List<String> summarize(String text, Span[] tokens) {
+        Map<String, Term> terms = new HashMap<>();
+        String previous = null;
+        int previousEnd = -1;
+        int position = 0;
+        for (Span token : tokens) {
+            String term = normalize(token.getCoveredText(text).toString());
+            if (term == null) {
+                previous = null;
+                continue;
+            }
+            count(terms, term, 1, position++);
+            if (previous != null) {
+                boolean adjacent = previousEnd == token.getStart()
+                        && ScriptAwareTokenizer.isUnspaced(previous.codePointBefore(previous.length()))
+                        && ScriptAwareTokenizer.isUnspaced(term.codePointAt(0));
+                count(terms, previous + (adjacent ? "" : " ") + term, PHRASE_WEIGHT, position++);
+            }
+            previous = term;
+            previousEnd = token.getEnd();
+        }
+        return this.select(terms);
+    }
+
+    private List<String> select(Map<String, Term> terms) {
+        Comparator<Term> ranking = Comparator.comparingInt(Term::score)
+                .thenComparing(Comparator.comparingInt((Term term) -> term.firstPosition).reversed());
+        PriorityQueue<Term> top = new PriorityQueue<>(ranking);
+        for (Term term : terms.values()) {
+            if (term.weight > 1 && term.count < 2) {
+                continue;
+            }
+            top.offer(term);
+            if (top.size() > this.size) {
+                top.poll();
+            }
+        }
+        List<Term> ranked = new ArrayList<>(top);
+        ranked.sort(ranking.reversed());
+        List<String> keyphrases = new ArrayList<>(ranked.size());
+        int length = 0;
+        for (Term term : ranked) {
+            length += term.text.length();
+            if (length > this.maxLength) {
+                break;
+            }
+            keyphrases.add(term.text);
+        }
+        return Collections.unmodifiableList(keyphrases);
+    }
+
+    private static void count(Map<String, Term> terms, String text, int weight, int position) {
+        terms.computeIfAbsent(text, key -> new Term(key, weight, position)).count++;
+    }
+
+    private static String normalize(String token) {
+        int from = 0;
+        int to = token.length();
+        while (from < to && !Character.isLetterOrDigit(token.charAt(from))) {
+            from++;
+        }
+        while (to > from && !Character.isLetterOrDigit(token.charAt(to - 1))) {
+            to--;
+        }
+        if (from == to) {
+            return null;
+        }
+        String term = StringUtil.toLowerCase(token.substring(from, to));
+        if (term.codePointCount(0, term.length()) < minLength(term)) {
+            return null;
+        }
+        if (STOP_WORDS.contains(term) || !containsLetter(term)) {
+            return null;
+        }
+        return term;
+    }
+
+    private static int minLength(String term) {
+        int codePoint = term.codePointAt(0);
+        if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+            return MIN_IDEOGRAPHIC_TERM_LENGTH;
+        }
+        return ScriptAwareTokenizer.isUnspaced(codePoint) ? MIN_UNSPACED_TERM_LENGTH : MIN_TERM_LENGTH;
+    }
+
+    private static boolean containsLetter(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isLetter(term.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Term {
+
+        private final String text;
+
+        private final int weight;
+
+        private final int firstPosition;
+
+        private int count;
+
+        private Term(String text, int weight, int firstPosition) {
+            this.text = text;
+            this.weight = weight;
+            this.firstPosition = firstPosition;
+        }
+
+        private int score() {
+            return this.count * this.weight;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.algolia.core.extender.internal;
+
+import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.tokenize.WhitespaceTokenizer;
+import opennlp.tools.util.Span;
+import opennlp.tools.util.StringUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tokenizes the extracted PDF text and partitions the tokens into chunks of a fixed word count.
+ * <p>
+ * Tokens are joined with a single space, except for tokens which are adjacent in the text (e.g. segmented Chinese
+ * or Thai words), which are joined without a separator.
+ * <p>
+ * Texts the caller marks as parallel are cut into segments at whitespace boundaries and processed on a bounded
+ * {@link ForkJoinPool}, unless they are too short to be worth splitting. The length threshold is left to the
+ * caller, so that changing it does not require a new pool. Every segment and chunk is written to its own slot, so
+ * the result is identical to the sequential one regardless of the number of workers. Once the pool is retired or
+ * shut down, texts are processed on the calling thread again.
+ *
+ * @since 3.6.0
+ */
+final class PdfTextChunker {
+
+    /**
+     * Minimum number of characters handled by a single tokenizing task.
+     */
+    private static final int MIN_SEGMENT_LENGTH = 16 * 1024;
+
+    /**
+     * Number of chunks built by a single leaf task.
+     */
+    private static final int CHUNKS_PER_TASK = 8;
+
+    private final Tokenizer tokenizer;
+
+    private final ForkJoinPool pool;
+
+    private final LongAdder parallelInvocations = new LongAdder();
+
+    /**
+     * Creates a chunker that always runs on the calling thread.
+     */
+    PdfTextChunker() {
+        this(WhitespaceTokenizer.INSTANCE, 1);
+    }
+
+    /**
+     * Creates a chunker which uses a dedicated pool for the texts marked as parallel.
+     *
+     * @param tokenizer   thread safe tokenizer which only breaks tokens at whitespace or within a token
+     * @param parallelism number of workers, a value lower than 2 disables parallel processing
+     */
+    PdfTextChunker(Tokenizer tokenizer, int parallelism) {
+        this.tokenizer = tokenizer;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Tokenizes the text, on the pool if {@code parallel} is set and the text is longer than a single segment.
+     */
+    Span[] tokenize(String text, boolean parallel) {
+        if (!parallel || this.pool == null || this.pool.isShutdown() || text.length() < MIN_SEGMENT_LENGTH) {
+            return this.tokenizer.tokenizePos(text);
+        }
+        int segmentCount = Math.max(1, Math.min(this.pool.getParallelism() * 4, text.length() / MIN_SEGMENT_LENGTH));
+        int[] boundaries = segmentBoundaries(text, segmentCount);
+        try {
+            Span[] tokens = this.pool.invoke(new TokenizeTask(this.tokenizer, text, boundaries, 0,
+                    boundaries.length - 1));
+            this.parallelInvocations.increment();
+            return tokens;
+        } catch (RejectedExecutionException | CancellationException ex) {
+            // retired or shut down meanwhile
+            return this.tokenizer.tokenizePos(text);
+        }
+    }
+
+    /**
+     * Partitions the tokens of the text into chunks of at most {@code wordSizeLimit} words.
+     */
+    String[] partition(String text, Span[] tokens, int wordSizeLimit, boolean parallel) {
+        int chunkCount = (tokens.length + wordSizeLimit - 1) / wordSizeLimit;
+        String[] chunks = new String[chunkCount];
+        if (parallel && this.pool != null && chunkCount > CHUNKS_PER_TASK) {
+            try {
+                this.pool.invoke(new ChunkTask(text, tokens, wordSizeLimit, chunks, 0, chunkCount));
+                this.parallelInvocations.increment();
+                return chunks;
+            } catch (RejectedExecutionException | CancellationException ex) {
+                // retired or shut down meanwhile, chunks are idempotent so they are all built again sequentially
+            }
+        }
+        buildChunks(text, tokens, wordSizeLimit, chunks, 0, chunkCount);
+        return chunks;
+    }
+
+    /**
+     * Number of tokenizations and partitions completed on the pool.
+     */
+    long getParallelInvocations() {
+        return this.parallelInvocations.sum();
+    }
+
+    /**
+     * Lets the tasks already running complete and processes any further text on the calling thread.
+     */
+    void retire() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    void shutdown() {
+        if (this.pool != null) {
+            this.pool.shutdownNow();
+        }
+    }
+
+    private static int[] segmentBoundaries(String text, int segmentCount) {
+        int length = text.length();
+        int[] boundaries = new int[segmentCount + 1];
+        int count = 1;
+        for (int i = 1; i < segmentCount; i++) {
+            int boundary = Math.max((int) ((long) length * i / segmentCount), boundaries[count - 1]);
+            while (boundary < length && !StringUtil.isWhitespace(text.charAt(boundary))) {
+                boundary++;
+            }
+            if (boundary > boundaries[count - 1] && boundary < length) {
+                boundaries[count++] = boundary;
+            }
+        }
+        boundaries[count++] = length;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private static void buildChunks(String text, Span[] tokens, int wordSizeLimit, String[] chunks, int from,
+                                    int to) {
+        for (int i = from; i < to; i++) {
+            int rangeFrom = i * wordSizeLimit;
+            int rangeTo = Math.min(rangeFrom + wordSizeLimit, tokens.length);
+            chunks[i] = buildChunk(text, tokens, rangeFrom, rangeTo);
+        }
+    }
+
+    private static String buildChunk(String text, Span[] tokens, int from, int to) {
+        StringBuilder sentenceBuilder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from && tokens[i - 1].getEnd() < tokens[i].getStart()) {
+                sentenceBuilder.append(' ');
+            }
+            sentenceBuilder.append(text, tokens[i].getStart(), tokens[i].getEnd());
+        }
+        return sentenceBuilder.toString();
+    }
+
+    private static final class TokenizeTask extends RecursiveTask<Span[]> {
+
+        private final Tokenizer tokenizer;
+
+        private final String text;
+
+        private final int[] boundaries;
+
+        private final int from;
+
+        private final int to;
+
+        private TokenizeTask(Tokenizer tokenizer, String text, int[] boundaries, int from, int to) {
+            this.tokenizer = tokenizer;
+            this.text = text;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Span[] compute() {
+            if (this.to - this.from == 1) {
+                int offset = this.boundaries[this.from];
+                Span[] tokens = this.tokenizer.tokenizePos(this.text.substring(offset, this.boundaries[this.to]));
+                for (int i = 0; i < tokens.length; i++) {
+                    tokens[i] = new Span(tokens[i], offset);
+                }
+                return tokens;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            TokenizeTask left = new TokenizeTask(this.tokenizer, this.text, this.boundaries, this.from, middle);
+            left.fork();
+            Span[] right = new TokenizeTask(this.tokenizer, this.text, this.boundaries, middle, this.to).compute();
+            Span[] leftTokens = left.join();
+            Span[] tokens = Arrays.copyOf(leftTokens, leftTokens.length + right.length);
+            System.arraycopy(right, 0, tokens, leftTokens.length, right.length);
+            return tokens;
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final String text;
+
+        private final Span[] tokens;
+
+        private final int wordSizeLimit;
+
+        private final String[] chunks;
+
+        private final int from;
+
+        private final int to;
+
+        private ChunkTask(String text, Span[] tokens, int wordSizeLimit, String[] chunks, int from, int to) {
+            this.text = text;
+            this.tokens = tokens;
+            this.wordSizeLimit = wordSizeLimit;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= CHUNKS_PER_TASK) {
+                buildChunks(this.text, this.tokens, this.wordSizeLimit, this.chunks, this.from, this.to);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ChunkTask(this.text, this.tokens, this.wordSizeLimit, this.chunks, this.from, middle),
+                    new ChunkTask(this.text, this.tokens, this.wordSizeLimit, this.chunks, middle, this.to));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.algolia.core.extender.internal;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers PDF binaries which produced no text or failed to be extracted, keyed by the hash of the binary.
+ * <p>
+ * Entries are kept in memory and written to an {@link AppendOnlyJournal}, so that the cache survives restarts. Each
+ * entry expires after the retry TTL configured for its outcome. Entries store the time they were recorded, so that
+ * new TTLs also apply to the entries already cached.
+ *
+ * @since 3.6.0
+ */
+final class PdfTextNegativeCache {
+
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Outcome of a text extraction worth remembering.
+     */
+    enum Outcome {
+        NO_TEXT,
+        FAILED
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AppendOnlyJournal journal;
+
+    private volatile long noTextTtlMillis;
+
+    private volatile long failedTtlMillis;
+
+    private final Clock clock;
+
+    /**
+     * @param journal         the journal file, may be null for an in-memory only cache
+     * @param noTextTtlMillis retry TTL for binaries without text
+     * @param failedTtlMillis retry TTL for binaries which failed to be extracted
+     * @param clock           the clock used for expiry
+     */
+    PdfTextNegativeCache(File journal, long noTextTtlMillis, long failedTtlMillis, Clock clock) {
+        this.journal = new AppendOnlyJournal(journal, "PDF negative cache journal");
+        this.noTextTtlMillis = noTextTtlMillis;
+        this.failedTtlMillis = failedTtlMillis;
+        this.clock = clock;
+        this.load();
+    }
+
+    /**
+     * Returns the unexpired outcome recorded for the given binary hash, if any.
+     */
+    Outcome get(String hash) {
+        Entry entry = this.entries.get(hash);
+        if (entry == null) {
+            return null;
+        }
+        if (this.isExpired(entry, this.clock.millis())) {
+            this.entries.remove(hash, entry);
+            return null;
+        }
+        return entry.outcome;
+    }
+
+    void put(String hash, Outcome outcome) {
+        if (this.ttl(outcome) <= 0) {
+            return;
+        }
+        Entry entry = new Entry(outcome, this.clock.millis());
+        this.entries.put(hash, entry);
+        this.journal.append(hash + SEPARATOR + entry.outcome + SEPARATOR + entry.recordedAt);
+    }
+
+    /**
+     * Applies new retry TTLs, to the cached entries as well.
+     */
+    void setTtls(long noTextTtlMillis, long failedTtlMillis) {
+        this.noTextTtlMillis = noTextTtlMillis;
+        this.failedTtlMillis = failedTtlMillis;
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    void close() {
+        this.journal.close();
+    }
+
+    private long ttl(Outcome outcome) {
+        return outcome == Outcome.NO_TEXT ? this.noTextTtlMillis : this.failedTtlMillis;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return entry.recordedAt + this.ttl(entry.outcome) <= now;
+    }
+
+    private void load() {
+        long now = this.clock.millis();
+        boolean complete = this.journal.replay(line -> {
+            String[] parts = StringUtils.split(line, SEPARATOR);
+            if (parts.length == 3) {
+                Entry entry = new Entry(Outcome.valueOf(parts[1]), Long.parseLong(parts[2]));
+                if (this.isExpired(entry, now)) {
+                    this.entries.remove(parts[0]);
+                } else {
+                    this.entries.put(parts[0], entry);
+                }
+            }
+        });
+        if (!complete) {
+            this.entries.clear();
+        }
+        this.journal.compact(this.entries.entrySet().stream()
+                .map(entry -> entry.getKey() + SEPARATOR + entry.getValue().outcome + SEPARATOR
+                        + entry.getValue().recordedAt));
+    }
+
+    private static final class Entry {
+
+        private final Outcome outcome;
+
+        private final long recordedAt;
+
+        private Entry(Outcome outcome, long recordedAt) {
+            this.outcome = outcome;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
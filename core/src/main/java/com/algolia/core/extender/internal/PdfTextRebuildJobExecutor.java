@@ -0,0 +1,82 @@
+package com.algolia.core.extender.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sling job reindexing the PDF assets held by the PDF text segment store to the registered
+ * {@link BulkReindexRequestConsumer}s, straight from the stored texts and without reading the repository.
+ * <p>
+ * The requests only hold the PDF text attributes of every asset, keyed like in a bulk reindex, so consumers apply
+ * them as partial updates of the records. Other attributes are refreshed by a bulk reindex. The requests do not run
+ * through the extenders, their records are not reported to the record delivery listeners either.
+ *
+ * @since 3.6.0
+ */
+@Component(
+        service = JobExecutor.class,
+        property = JobExecutor.PROPERTY_TOPICS + "=" + PdfTextRebuildJobExecutor.TOPIC
+)
+public class PdfTextRebuildJobExecutor implements JobExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String TOPIC = "com/algolia/extensions/pdftextrebuild";
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private final List<BulkReindexRequestConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    private final PdfTextSegments segments;
+
+    @Activate
+    public PdfTextRebuildJobExecutor(@Reference PdfTextSegments segments) {
+        this.segments = segments;
+    }
+
+    @Override
+    public JobExecutionResult process(Job job, JobExecutionContext context) {
+        if (!this.segments.isEnabled()) {
+            return context.result().message("The PDF text segment store is disabled.").cancelled();
+        }
+        long start = System.nanoTime();
+        long count;
+        try {
+            count = this.segments.rebuild(this::accept, context::isStopped);
+        } catch (IllegalStateException ex) {
+            // disabled meanwhile
+            return context.result().message(ex.getMessage()).cancelled();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (context.isStopped()) {
+            return context.result().message("PDF text rebuild stopped after " + count + " assets.").cancelled();
+        }
+        String message = "Rebuilt the records of " + count + " PDF assets from the segment store in "
+                + TimeUnit.MILLISECONDS.toSeconds(elapsedMillis) + "s.";
+        LOGGER.info(message);
+        return context.result().message(message).succeeded();
+    }
+
+    private void accept(AlgoliaRequest request) {
+        for (BulkReindexRequestConsumer consumer : this.consumers) {
+            consumer.accept(request);
+        }
+    }
+}
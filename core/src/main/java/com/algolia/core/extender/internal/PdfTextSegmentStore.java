@@ -0,0 +1,613 @@
+package com.algolia.core.extender.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store of the extracted PDF texts, keyed by asset path and binary hash, from which the PDF records of
+ * an index can be rebuilt without parsing the PDFs again. The text is kept exactly as extracted, the final chunks
+ * being laid out from it with the current configuration.
+ * <p>
+ * Entries are appended to numbered segment files. A segment is sealed once it exceeds the configured size and is
+ * read through a read-only memory mapping from then on. Every entry carries a CRC32, so a torn write at the end of
+ * the last segment is detected and truncated on startup. An entry for a path supersedes the previous one, which
+ * stays in its segment until {@link #compact()} copies the live entries into new segments. Removed paths are
+ * recorded as entries with an empty hash and text.
+ * <p>
+ * Segment layout: {@code magic:int version:int} followed by entries of
+ * {@code length:int crc:int path:string hash:string text:string}, strings being UTF-8 bytes prefixed by their
+ * length as int.
+ *
+ * @since 3.6.0
+ */
+final class PdfTextSegmentStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int MAGIC = 0x414C5347;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int ENTRY_HEADER_LENGTH = 8;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{10})\\.seg");
+
+    /**
+     * Suffix of the segments being written by a compaction, left behind if it did not complete.
+     */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    private volatile long segmentSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+
+    /**
+     * Sealed segments by id, mapped on first read.
+     */
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    private Segment active;
+
+    private long liveBytes;
+
+    private long totalBytes;
+
+    /**
+     * An entry as stored.
+     */
+    static final class Entry {
+
+        final String path;
+
+        final String hash;
+
+        final String text;
+
+        private Entry(String path, String hash, String text) {
+            this.path = path;
+            this.hash = hash;
+            this.text = text;
+        }
+    }
+
+    /**
+     * @param directory   the directory holding the segments, created if missing
+     * @param segmentSize size in bytes after which a segment is sealed and a new one started
+     */
+    PdfTextSegmentStore(File directory, long segmentSize) throws IOException {
+        this.directory = directory.toPath();
+        this.segmentSize = segmentSize;
+        Files.createDirectories(this.directory);
+        this.load();
+    }
+
+    /**
+     * Appends the text of the given asset binary, superseding any previous entry of the path.
+     */
+    void append(String path, String hash, String text) {
+        ByteBuffer entry = encode(path, hash, text);
+        int length = entry.remaining();
+        this.lock.writeLock().lock();
+        try {
+            long offset = this.write(entry);
+            this.put(path, new Location(this.active.id, offset, length, hash));
+        } catch (IOException ex) {
+            LOGGER.warn("Could not append PDF text of: {} to segment: {}", path, this.active.file, ex);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entries of the given path and of the paths below it.
+     */
+    void remove(String path) {
+        String prefix = path + "/";
+        this.lock.writeLock().lock();
+        try {
+            for (String key : new ArrayList<>(this.index.keySet())) {
+                if (key.equals(path) || key.startsWith(prefix)) {
+                    ByteBuffer tombstone = encode(key, "", "");
+                    int length = tombstone.remaining();
+                    this.write(tombstone);
+                    this.drop(key, length);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not remove PDF text of: {} from segment: {}", path, this.active.file, ex);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the text extracted from the given binary is stored for the path
+     */
+    boolean contains(String path, String hash) {
+        Location location = this.index.get(path);
+        return location != null && location.hash.equals(hash);
+    }
+
+    /**
+     * Returns the text stored for the given path if it was extracted from the given binary.
+     */
+    Entry get(String path, String hash) {
+        Location location = this.index.get(path);
+        if (location == null || !location.hash.equals(hash)) {
+            return null;
+        }
+        Entry entry = this.read(path);
+        return entry != null && entry.hash.equals(hash) ? entry : null;
+    }
+
+    /**
+     * Returns the text stored for the given path, null if there is none or it could not be read.
+     */
+    Entry get(String path) {
+        return this.read(path);
+    }
+
+    /**
+     * Returns the paths of the live entries in segment order, so that reading their entries one after the other
+     * walks the segments sequentially.
+     */
+    List<String> paths() {
+        List<Map.Entry<String, Location>> locations = new ArrayList<>(this.index.entrySet());
+        locations.sort(Comparator.comparing((Map.Entry<String, Location> entry) -> entry.getValue().segment)
+                .thenComparingLong(entry -> entry.getValue().offset));
+        return locations.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Changes the size after which the segment being written is sealed.
+     */
+    void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    int size() {
+        return this.index.size();
+    }
+
+    int segmentCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.segments.size() + 1;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Share of the stored bytes taken by superseded entries.
+     */
+    double garbageRatio() {
+        this.lock.readLock().lock();
+        try {
+            return this.totalBytes > 0 ? 1 - (double) this.liveBytes / this.totalBytes : 0;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live entries into new segments and deletes the old ones.
+     * <p>
+     * The new segments are written as temporary files and only take the place of the old ones once all entries
+     * were copied, any failure before leaves the store unchanged. They are numbered after the old segments, so
+     * that they supersede them on startup should the old segments not be deleted.
+     *
+     * @throws IOException if an entry could not be read or the new segments could not be written
+     */
+    void compact() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            List<Segment> old = new ArrayList<>(this.segments.values());
+            old.add(this.active);
+            List<Map.Entry<String, Location>> live = new ArrayList<>(this.index.entrySet());
+            live.sort(Comparator.comparing((Map.Entry<String, Location> entry) -> entry.getValue().segment)
+                    .thenComparingLong(entry -> entry.getValue().offset));
+            List<Segment> compacted = new ArrayList<>();
+            Map<String, Location> locations = new HashMap<>();
+            long bytes = 0;
+            try {
+                Segment target = Segment.create(this.directory, this.active.id + 1, TEMPORARY_SUFFIX);
+                compacted.add(target);
+                for (Map.Entry<String, Location> entry : live) {
+                    Location location = entry.getValue();
+                    if (target.length >= this.segmentSize) {
+                        target = Segment.create(this.directory, target.id + 1, TEMPORARY_SUFFIX);
+                        compacted.add(target);
+                    }
+                    // Entries are copied as stored, their checksum included.
+                    long offset = target.append(this.bytes(location));
+                    locations.put(entry.getKey(), new Location(target.id, offset, location.length, location.hash));
+                    bytes += location.length;
+                }
+                for (int i = 0; i < compacted.size(); i++) {
+                    compacted.get(i).seal();
+                    compacted.set(i, compacted.get(i).publish(this.directory));
+                }
+            } catch (IOException | RuntimeException ex) {
+                for (Segment segment : compacted) {
+                    segment.delete();
+                }
+                throw ex;
+            }
+            for (Segment segment : old) {
+                segment.delete();
+            }
+            this.segments.clear();
+            for (Segment segment : compacted.subList(0, compacted.size() - 1)) {
+                this.segments.put(segment.id, segment);
+            }
+            this.active = compacted.get(compacted.size() - 1);
+            this.index.putAll(locations);
+            this.liveBytes = bytes;
+            this.totalBytes = bytes;
+            LOGGER.info("Compacted PDF text segments from {} to {} segments.", old.size(), compacted.size());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    void close() {
+        this.lock.writeLock().lock();
+        try {
+            this.segments.values().forEach(Segment::close);
+            this.active.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private Entry read(String path) {
+        this.lock.readLock().lock();
+        try {
+            Location location = this.index.get(path);
+            return location != null ? this.readLocked(path, location) : null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private Entry readLocked(String path, Location location) {
+        try {
+            return decode(this.bytes(location));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not read PDF text of: {} from segment: {}", path, location.segment, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stored bytes of an entry, header included.
+     */
+    private ByteBuffer bytes(Location location) throws IOException {
+        ByteBuffer buffer;
+        if (location.segment == this.active.id) {
+            buffer = ByteBuffer.allocate(location.length);
+            while (buffer.hasRemaining()) {
+                if (this.active.channel.read(buffer, location.offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of segment");
+                }
+            }
+            buffer.flip();
+        } else {
+            buffer = this.segments.get(location.segment).map().duplicate();
+            buffer.position((int) location.offset).limit((int) location.offset + location.length);
+        }
+        return buffer.slice();
+    }
+
+    private void put(String path, Location location) {
+        Location previous = this.index.put(path, location);
+        if (previous != null) {
+            this.liveBytes -= previous.length;
+        }
+        this.liveBytes += location.length;
+        this.totalBytes += location.length;
+    }
+
+    /**
+     * Superseded by a removal entry of the given length.
+     */
+    private void drop(String path, int tombstoneLength) {
+        Location previous = this.index.remove(path);
+        if (previous != null) {
+            this.liveBytes -= previous.length;
+        }
+        this.totalBytes += tombstoneLength;
+    }
+
+    /**
+     * Writes an encoded entry to the active segment, rolling it first if it is full.
+     *
+     * @return the offset of the entry in the active segment
+     */
+    private long write(ByteBuffer entry) throws IOException {
+        if (this.active.length >= this.segmentSize) {
+            this.roll();
+        }
+        return this.active.append(entry);
+    }
+
+    private void roll() throws IOException {
+        this.active.seal();
+        this.segments.put(this.active.id, this.active);
+        this.active = Segment.create(this.directory, this.active.id + 1, "");
+    }
+
+    private void load() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = SEGMENT_NAME.matcher(name);
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                } else if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    LOGGER.info("Deleting PDF text segment of an incomplete compaction: {}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+        ids.sort(Integer::compare);
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = Segment.open(this.directory, ids.get(i));
+            long end = this.scan(segment);
+            if (i < ids.size() - 1 || end < 0) {
+                segment.seal();
+                this.segments.put(segment.id, segment);
+            } else {
+                if (end < segment.channel.size()) {
+                    LOGGER.warn("Truncating torn entry at the end of PDF text segment: {}", segment.file);
+                    segment.channel.truncate(end);
+                }
+                segment.length = end;
+                this.active = segment;
+            }
+        }
+        if (this.active == null) {
+            // Unreadable segments are never appended to, they are removed by the next compaction.
+            this.active = Segment.create(this.directory, ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1, "");
+        }
+    }
+
+    /**
+     * Indexes the valid entries of a segment.
+     *
+     * @return the offset after the last valid entry, -1 if the segment has no valid header
+     */
+    private long scan(Segment segment) throws IOException {
+        long size = segment.channel.size();
+        if (size < HEADER_LENGTH) {
+            return -1;
+        }
+        MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            LOGGER.warn("Ignoring PDF text segment with unknown format: {}", segment.file);
+            return -1;
+        }
+        while (buffer.remaining() >= ENTRY_HEADER_LENGTH) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return offset;
+            }
+            ByteBuffer body = buffer.slice();
+            body.limit(length);
+            CRC32 actual = new CRC32();
+            actual.update(body.duplicate());
+            if ((int) actual.getValue() != crc) {
+                return offset;
+            }
+            buffer.position(offset + ENTRY_HEADER_LENGTH + length);
+            String path = readString(body);
+            String hash = readString(body);
+            if (hash.isEmpty()) {
+                this.drop(path, ENTRY_HEADER_LENGTH + length);
+            } else {
+                this.put(path, new Location(segment.id, offset, ENTRY_HEADER_LENGTH + length, hash));
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Encodes an entry including its header.
+     */
+    private static ByteBuffer encode(String path, String hash, String text) {
+        byte[][] strings = {
+                path.getBytes(StandardCharsets.UTF_8),
+                hash.getBytes(StandardCharsets.UTF_8),
+                text.getBytes(StandardCharsets.UTF_8)
+        };
+        int length = 0;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + string.length;
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_LENGTH + length);
+        entry.position(ENTRY_HEADER_LENGTH);
+        for (byte[] string : strings) {
+            entry.putInt(string.length).put(string);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(entry.array(), ENTRY_HEADER_LENGTH, length);
+        entry.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        return entry.flip();
+    }
+
+    /**
+     * Decodes an entry including its header.
+     */
+    private static Entry decode(ByteBuffer buffer) {
+        buffer.position(ENTRY_HEADER_LENGTH);
+        String path = readString(buffer);
+        String hash = readString(buffer);
+        String text = readString(buffer);
+        return new Entry(path, hash, text);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Location {
+
+        private final int segment;
+
+        private final long offset;
+
+        private final int length;
+
+        private final String hash;
+
+        private Location(int segment, long offset, int length, String hash) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+
+    private static final class Segment {
+
+        private final int id;
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private long length;
+
+        private MappedByteBuffer mapping;
+
+        private Segment(int id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+
+        private static Segment open(Path directory, int id) throws IOException {
+            Path file = directory.resolve(name(id));
+            Segment segment = new Segment(id, file, FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE));
+            segment.length = segment.channel.size();
+            return segment;
+        }
+
+        /**
+         * @param suffix appended to the file name, e.g. for a segment only published once complete
+         */
+        private static Segment create(Path directory, int id, String suffix) throws IOException {
+            Path file = directory.resolve(name(id) + suffix);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            Segment segment = new Segment(id, file, channel);
+            segment.length = HEADER_LENGTH;
+            return segment;
+        }
+
+        private static String name(int id) {
+            return String.format("segment-%010d.seg", id);
+        }
+
+        /**
+         * Writes an encoded entry at the end of the segment.
+         *
+         * @return the offset of the entry
+         */
+        private long append(ByteBuffer entry) throws IOException {
+            long offset = this.length;
+            int entryLength = entry.remaining();
+            while (entry.hasRemaining()) {
+                this.channel.write(entry, offset + entry.position());
+            }
+            this.length = offset + entryLength;
+            return offset;
+        }
+
+        /**
+         * Moves a complete segment to its final name.
+         *
+         * @return the segment opened under its final name
+         */
+        private Segment publish(Path directory) throws IOException {
+            this.close();
+            Files.move(this.file, directory.resolve(name(this.id)), StandardCopyOption.ATOMIC_MOVE);
+            return open(directory, this.id);
+        }
+
+        private synchronized MappedByteBuffer map() throws IOException {
+            if (this.mapping == null) {
+                this.mapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.length);
+            }
+            return this.mapping;
+        }
+
+        /**
+         * Flushes the segment, which is only read from now on.
+         */
+        private void seal() throws IOException {
+            this.channel.force(false);
+        }
+
+        private void close() {
+            try {
+                this.channel.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Could not close PDF text segment: {}", this.file, ex);
+            }
+            this.mapping = null;
+        }
+
+        private void delete() {
+            this.close();
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException ex) {
+                LOGGER.warn("Could not delete PDF text segment: {}", this.file, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.algolia.core.extender.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRequest;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Service giving access to the PDF text segment store of the {@link DefaultAlgoliaPdfTextExtractor}, used by the
+ * rebuild job and the JMX bean.
+ *
+ * @since 3.6.0
+ */
+public interface PdfTextSegments {
+
+    /**
+     * @return false if the segment store is disabled, the other operations then fail or report nothing
+     */
+    boolean isEnabled();
+
+    /**
+     * Streams the requests of the PDF assets held by the segment store, in segment order, without reading the
+     * repository. Every request holds the base record of the asset path with the PDF text attributes laid out
+     * from the stored text with the current configuration, split into several records where needed.
+     *
+     * @param consumer receives the request of every stored asset
+     * @param stopped  checked before every asset, stops the rebuild once true
+     * @return the number of assets streamed
+     * @throws IllegalStateException if the segment store is disabled
+     */
+    long rebuild(Consumer<AlgoliaRequest> consumer, BooleanSupplier stopped);
+
+    /**
+     * Copies the live entries into new segments, dropping the superseded ones.
+     *
+     * @throws IOException           if the segments could not be rewritten, the store is left unchanged then
+     * @throws IllegalStateException if the segment store is disabled
+     */
+    void compact() throws IOException;
+
+    /**
+     * @return the number of PDF assets held by the segment store
+     */
+    int getEntries();
+
+    /**
+     * @return the number of segment files
+     */
+    int getSegments();
+
+    /**
+     * @return the share of the stored bytes taken by superseded entries
+     */
+    double getGarbageRatio();
+}
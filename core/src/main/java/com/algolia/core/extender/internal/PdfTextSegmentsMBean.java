@@ -0,0 +1,27 @@
+package com.algolia.core.extender.internal;
+
+import com.adobe.granite.jmx.annotation.Description;
+
+/**
+ * JMX operations on the PDF text segment store.
+ *
+ * @since 3.6.0
+ */
+@Description("Algolia PDF Text Segments")
+public interface PdfTextSegmentsMBean {
+
+    @Description("Reindexes the PDF text of the assets held by the segment store to the bulk reindex consumers.")
+    String rebuild();
+
+    @Description("Rewrites the live entries into new segments, dropping the superseded ones.")
+    String compact();
+
+    @Description("Number of PDF assets held by the segment store.")
+    int getEntries();
+
+    @Description("Number of segment files.")
+    int getSegments();
+
+    @Description("Share of the stored bytes taken by superseded entries.")
+    double getGarbageRatio();
+}
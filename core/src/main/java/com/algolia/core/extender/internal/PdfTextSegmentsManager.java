@@ -0,0 +1,86 @@
+package com.algolia.core.extender.internal;
+
+import com.adobe.granite.jmx.annotation.AnnotatedStandardMBean;
+import org.apache.sling.event.jobs.JobManager;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Collections;
+
+import static com.algolia.core.extender.internal.PdfTextRebuildJobExecutor.TOPIC;
+
+/**
+ * JMX bean starting {@link PdfTextRebuildJobExecutor} jobs and compacting the PDF text segment store.
+ *
+ * @since 3.6.0
+ */
+@Component(
+        service = DynamicMBean.class,
+        property = "jmx.objectname=com.algolia.extensions:type=PdfTextSegments"
+)
+public class PdfTextSegmentsManager extends AnnotatedStandardMBean implements PdfTextSegmentsMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String DISABLED = "The PDF text segment store is disabled.";
+
+    private final JobManager jobManager;
+
+    private final PdfTextSegments segments;
+
+    @Activate
+    public PdfTextSegmentsManager(@Reference JobManager jobManager,
+                                  @Reference PdfTextSegments segments)
+            throws NotCompliantMBeanException {
+        super(PdfTextSegmentsMBean.class);
+        this.jobManager = jobManager;
+        this.segments = segments;
+    }
+
+    @Override
+    public String rebuild() {
+        if (!this.segments.isEnabled()) {
+            return DISABLED;
+        }
+        if (!this.jobManager.findJobs(JobManager.QueryType.ALL, TOPIC, 1).isEmpty()) {
+            return "A PDF text rebuild is already queued or running.";
+        }
+        return "Started PDF text rebuild job: " + this.jobManager.addJob(TOPIC, Collections.emptyMap()).getId();
+    }
+
+    @Override
+    public String compact() {
+        if (!this.segments.isEnabled()) {
+            return DISABLED;
+        }
+        try {
+            this.segments.compact();
+            return "Compacted the PDF text segment store to " + this.segments.getSegments() + " segments.";
+        } catch (IOException | IllegalStateException ex) {
+            LOGGER.error("Could not compact the PDF text segment store.", ex);
+            return "Could not compact the PDF text segment store: " + ex.getMessage();
+        }
+    }
+
+    @Override
+    public int getEntries() {
+        return this.segments.getEntries();
+    }
+
+    @Override
+    public int getSegments() {
+        return this.segments.getSegments();
+    }
+
+    @Override
+    public double getGarbageRatio() {
+        return this.segments.getGarbageRatio();
+    }
+}
@@ -0,0 +1,259 @@
+package com.algolia.core.extender.internal;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the digest of the last version of every record delivered to Algolia, keyed by objectID, together with
+ * the path of the page or asset the record was built from.
+ * <p>
+ * Entries are kept in memory and written to an {@link AppendOnlyJournal}, so that the digests survive restarts. An
+ * entry older than the maximum age no longer counts as delivered, so that every record is refreshed periodically
+ * even without content changes. Removed entries are journaled as an empty digest, and the journal is compacted
+ * once it holds twice as many lines as there are entries. Entries are only changed while holding the store lock,
+ * lookups are lock-free.
+ * <p>
+ * The split records of a record are keyed by its objectID followed by {@code _} and their index.
+ *
+ * @since 3.6.0
+ */
+final class RecordFingerprintStore {
+
+    private static final String SEPARATOR = "\t";
+
+    private static final String SPLIT_SEPARATOR = "_";
+
+    /**
+     * Journal lines written before the first compaction is considered, so that small stores are not compacted
+     * over and over.
+     */
+    private static final long MIN_COMPACTION_LINES = 1024;
+
+    /**
+     * Sorted, so that the split records of an objectID are found by prefix.
+     */
+    private final ConcurrentNavigableMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * ObjectIDs by the path of their page or asset, sorted so that the paths below a path are found by prefix.
+     */
+    private final NavigableMap<String, Set<String>> objectIDsByPath = new TreeMap<>();
+
+    private final AppendOnlyJournal journal;
+
+    private final AtomicLong journalLines = new AtomicLong();
+
+    private volatile long maxAgeMillis;
+
+    private final Clock clock;
+
+    /**
+     * @param journal      the journal file, may be null for an in-memory only store
+     * @param maxAgeMillis age after which a record is sent again although unchanged, 0 for no limit
+     * @param clock        the clock used for expiry
+     */
+    RecordFingerprintStore(File journal, long maxAgeMillis, Clock clock) {
+        this.journal = new AppendOnlyJournal(journal, "record fingerprint journal");
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+        this.load();
+    }
+
+    /**
+     * @return true if the same digest was delivered for the objectID within the maximum age, the record does not
+     * have to be sent then
+     */
+    boolean isUnchanged(String objectID, String digest) {
+        Entry entry = this.entries.get(objectID);
+        return entry != null && entry.digest.equals(digest) && !this.isExpired(entry, this.clock.millis());
+    }
+
+    /**
+     * Records the digest of a record Algolia acknowledged.
+     *
+     * @param path the path of the page or asset the record was built from, may be null
+     */
+    synchronized void confirm(String objectID, String path, String digest) {
+        String recordPath = StringUtils.defaultString(path);
+        Entry previous = this.entries.get(objectID);
+        if (previous != null && previous.path.equals(recordPath) && this.isUnchanged(objectID, digest)) {
+            return;
+        }
+        this.put(objectID, new Entry(digest, recordPath, this.clock.millis()));
+        this.append(line(objectID, this.entries.get(objectID)));
+    }
+
+    /**
+     * Forgets the digest of a single record, e.g. before a changed version of it is sent without knowing whether
+     * it will be delivered.
+     */
+    synchronized void invalidate(String objectID) {
+        this.forget(objectID);
+    }
+
+    /**
+     * Forgets the digests of a record and of its split records, e.g. after they were deleted from the index.
+     */
+    void remove(String objectID) {
+        this.retain(objectID, Collections.emptySet());
+    }
+
+    /**
+     * Forgets the digests of a record and of its split records which are not among the given objectIDs, e.g.
+     * after the number of split records dropped.
+     */
+    synchronized void retain(String objectID, Collection<String> objectIDs) {
+        for (String member : this.family(objectID)) {
+            if (!objectIDs.contains(member)) {
+                this.forget(member);
+            }
+        }
+    }
+
+    /**
+     * Forgets the digests of all records built from the given page or asset and from the ones below it, e.g.
+     * after they were deactivated.
+     */
+    synchronized void removePath(String path) {
+        List<String> objectIDs = new ArrayList<>();
+        Set<String> own = this.objectIDsByPath.get(path);
+        if (own != null) {
+            objectIDs.addAll(own);
+        }
+        // '0' follows '/', the sub map holds exactly the paths below the path.
+        this.objectIDsByPath.subMap(path + "/", path + "0").values().forEach(objectIDs::addAll);
+        objectIDs.forEach(this::forget);
+    }
+
+    /**
+     * Applies a new maximum age, to the recorded digests as well.
+     */
+    void setMaxAge(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    synchronized void close() {
+        this.journal.close();
+    }
+
+    /**
+     * The objectID and the objectIDs of its split records held by the store.
+     */
+    private List<String> family(String objectID) {
+        List<String> family = new ArrayList<>();
+        if (this.entries.containsKey(objectID)) {
+            family.add(objectID);
+        }
+        String prefix = objectID + SPLIT_SEPARATOR;
+        for (String key : this.entries.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+            if (StringUtils.isNumeric(key.substring(prefix.length()))) {
+                family.add(key);
+            }
+        }
+        return family;
+    }
+
+    private void put(String objectID, Entry entry) {
+        Entry previous = this.entries.put(objectID, entry);
+        if (previous != null) {
+            this.unindex(objectID, previous);
+        }
+        if (!entry.path.isEmpty()) {
+            this.objectIDsByPath.computeIfAbsent(entry.path, key -> new HashSet<>()).add(objectID);
+        }
+    }
+
+    private void forget(String objectID) {
+        Entry previous = this.entries.remove(objectID);
+        if (previous != null) {
+            this.unindex(objectID, previous);
+            this.append(objectID + SEPARATOR + SEPARATOR + this.clock.millis() + SEPARATOR);
+        }
+    }
+
+    private void unindex(String objectID, Entry entry) {
+        Set<String> objectIDs = this.objectIDsByPath.get(entry.path);
+        if (objectIDs != null && objectIDs.remove(objectID) && objectIDs.isEmpty()) {
+            this.objectIDsByPath.remove(entry.path);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        long maxAge = this.maxAgeMillis;
+        return maxAge > 0 && entry.recordedAt + maxAge <= now;
+    }
+
+    private void append(String line) {
+        this.journal.append(line);
+        if (this.journalLines.incrementAndGet() > 2 * Math.max(this.entries.size(), MIN_COMPACTION_LINES)) {
+            this.compact();
+        }
+    }
+
+    private synchronized void load() {
+        long now = this.clock.millis();
+        boolean complete = this.journal.replay(line -> {
+            String[] parts = StringUtils.splitPreserveAllTokens(line, SEPARATOR);
+            // Journals written before the path was recorded have three fields.
+            if (parts.length == 3 || parts.length == 4) {
+                Entry entry = new Entry(parts[1], parts.length == 4 ? parts[3] : "", Long.parseLong(parts[2]));
+                Entry previous = this.entries.remove(parts[0]);
+                if (previous != null) {
+                    this.unindex(parts[0], previous);
+                }
+                if (!entry.digest.isEmpty() && !this.isExpired(entry, now)) {
+                    this.put(parts[0], entry);
+                }
+            }
+        });
+        if (!complete) {
+            this.entries.clear();
+            this.objectIDsByPath.clear();
+        }
+        this.compact();
+    }
+
+    private void compact() {
+        this.journalLines.set(this.entries.size());
+        this.journal.compact(this.entries.entrySet().stream().map(entry -> line(entry.getKey(), entry.getValue())));
+    }
+
+    private static String line(String objectID, Entry entry) {
+        return objectID + SEPARATOR + entry.digest + SEPARATOR + entry.recordedAt + SEPARATOR + entry.path;
+    }
+
+    private static final class Entry {
+
+        private final String digest;
+
+        /**
+         * Path of the page or asset the record was built from, empty if unknown.
+         */
+        private final String path;
+
+        private final long recordedAt;
+
+        private Entry(String digest, String path, long recordedAt) {
+            this.digest = digest;
+            this.path = path;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.algolia.core.extender.internal;
+
+import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.tokenize.WhitespaceTokenizer;
+import opennlp.tools.util.Span;
+
+import java.text.BreakIterator;
+import java.text.StringCharacterIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tokenizer splitting on whitespace like {@link WhitespaceTokenizer}, and further segmenting the tokens written in
+ * scripts which do not separate words with spaces.
+ * <p>
+ * Thai, Lao, Khmer and Myanmar tokens are segmented with a dictionary based {@link BreakIterator}. Every
+ * ideograph (Chinese, Japanese Kanji) is a token of its own, while runs of Kana are kept together. Punctuation is
+ * attached to the preceding segment, so the returned spans always cover the complete whitespace token and adjacent
+ * spans can be joined back without a separator.
+ *
+ * @since 3.6.0
+ */
+final class ScriptAwareTokenizer implements Tokenizer {
+
+    static final ScriptAwareTokenizer INSTANCE = new ScriptAwareTokenizer();
+
+    /**
+     * The Thai locale selects the dictionary based word break iterator, which handles the other scripts like root.
+     */
+    private static final Locale SEGMENTATION_LOCALE = new Locale("th");
+
+    /**
+     * Segments left unbroken by the break iterator are cut into pieces of this many characters.
+     */
+    private static final int MAX_SEGMENT_LENGTH = 32;
+
+    /**
+     * First code point of the Thai block, all scripts below it separate words with spaces.
+     */
+    private static final char FIRST_UNSPACED_CHAR = '\u0E00';
+
+    private ScriptAwareTokenizer() {
+    }
+
+    @Override
+    public String[] tokenize(String s) {
+        return Span.spansToStrings(this.tokenizePos(s), s);
+    }
+
+    @Override
+    public Span[] tokenizePos(String s) {
+        Span[] spans = WhitespaceTokenizer.INSTANCE.tokenizePos(s);
+        List<Span> tokens = null;
+        BreakIterator iterator = null;
+        for (int i = 0; i < spans.length; i++) {
+            Span span = spans[i];
+            if (!isUnspaced(s, span)) {
+                if (tokens != null) {
+                    tokens.add(span);
+                }
+                continue;
+            }
+            if (tokens == null) {
+                tokens = new ArrayList<>(spans.length * 2);
+                tokens.addAll(Arrays.asList(spans).subList(0, i));
+            }
+            if (iterator == null) {
+                iterator = BreakIterator.getWordInstance(SEGMENTATION_LOCALE);
+            }
+            segment(s, span, iterator, tokens);
+        }
+        return tokens == null ? spans : tokens.toArray(new Span[0]);
+    }
+
+    private static void segment(String s, Span span, BreakIterator iterator, List<Span> tokens) {
+        int size = tokens.size();
+        int pendingStart = -1;
+        iterator.setText(new StringCharacterIterator(s, span.getStart(), span.getEnd(), span.getStart()));
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+            if (!containsLetterOrDigit(s, start, end)) {
+                if (tokens.size() > size) {
+                    Span previous = tokens.remove(tokens.size() - 1);
+                    tokens.add(new Span(previous.getStart(), end));
+                } else if (pendingStart < 0) {
+                    pendingStart = start;
+                }
+                continue;
+            }
+            int from = pendingStart >= 0 ? pendingStart : start;
+            pendingStart = -1;
+            if (Character.isIdeographic(s.codePointAt(start))) {
+                addCodePoints(s, from, start, end, tokens);
+            } else {
+                int pieceStart = from;
+                while (pieceStart < end) {
+                    int pieceEnd = Math.min(pieceStart + MAX_SEGMENT_LENGTH, end);
+                    if (pieceEnd < end && Character.isHighSurrogate(s.charAt(pieceEnd - 1))) {
+                        pieceEnd++;
+                    }
+                    tokens.add(new Span(pieceStart, pieceEnd));
+                    pieceStart = pieceEnd;
+                }
+            }
+        }
+        if (tokens.size() == size) {
+            tokens.add(span);
+        }
+    }
+
+    private static void addCodePoints(String s, int from, int start, int end, List<Span> tokens) {
+        int tokenStart = from;
+        int i = start;
+        while (i < end) {
+            i += Character.charCount(s.codePointAt(i));
+            tokens.add(new Span(tokenStart, i));
+            tokenStart = i;
+        }
+    }
+
+    private static boolean isUnspaced(String s, Span span) {
+        for (int i = span.getStart(); i < span.getEnd(); i++) {
+            if (isUnspaced(s.codePointAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the code point belongs to a script which does not separate words with spaces.
+     */
+    static boolean isUnspaced(int codePoint) {
+        return codePoint >= FIRST_UNSPACED_CHAR && isUnspaced(Character.UnicodeScript.of(codePoint));
+    }
+
+    private static boolean isUnspaced(Character.UnicodeScript script) {
+        switch (script) {
+            case THAI:
+            case LAO:
+            case KHMER:
+            case MYANMAR:
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean containsLetterOrDigit(String s, int start, int end) {
+        int i = start;
+        while (i < end) {
+            int codePoint = s.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+}
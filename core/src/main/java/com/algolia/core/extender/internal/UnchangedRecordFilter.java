@@ -0,0 +1,318 @@
+package com.algolia.core.extender.internal;
+
+import com.algolia.connector.core.annotation.ComponentServiceProperties;
+import com.algolia.connector.core.domain.AlgoliaRecord;
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.connector.core.extender.AlgoliaAssetRequestExtender;
+import com.algolia.connector.core.extender.AlgoliaPageRequestExtender;
+import com.algolia.core.extender.RecordDeliveryListener;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.replication.ReplicationAction;
+import com.day.cq.replication.ReplicationActionType;
+import com.day.cq.wcm.api.Page;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.algolia.connector.core.AlgoliaConstants.ATTRIBUTE_PATH;
+
+/**
+ * Final stage extender dropping the records of a request, split records included, which are identical to the
+ * version last delivered to Algolia.
+ * <p>
+ * Registered with the lowest service ranking so that it sees the records as completed by all other extenders.
+ * Digests are keyed by objectID and only recorded once the code sending the records reports them as
+ * {@link #delivered delivered}, which the bulk reindex does after its consumers accepted a request. A changed
+ * record passing the filter forgets its previous digest, so that it is sent again until its delivery is reported.
+ * Digests are forgotten for records deleted from the index: when reported as {@link #deleted deleted}, when the
+ * page or asset they were built from is deactivated or deleted, and for split records beyond the current number
+ * of splits.
+ *
+ * @since 3.6.0
+ */
+@ComponentServiceProperties(description = "Algolia Unchanged Record Filter")
+@Component(
+        service = {
+                AlgoliaPageRequestExtender.class,
+                AlgoliaAssetRequestExtender.class,
+                RecordDeliveryListener.class,
+                EventHandler.class
+        },
+        property = {
+                Constants.SERVICE_RANKING + ":Integer=" + Integer.MIN_VALUE,
+                EventConstants.EVENT_TOPIC + "=" + ReplicationAction.EVENT_TOPIC
+        }
+)
+@Designate(ocd = UnchangedRecordFilter.Config.class)
+public class UnchangedRecordFilter implements AlgoliaPageRequestExtender, AlgoliaAssetRequestExtender,
+        RecordDeliveryListener, EventHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private static final String JOURNAL = "record-fingerprints.journal";
+
+    private static final String METRIC_PREFIX = "algolia.unchangedRecordFilter.";
+
+    /**
+     * Index suffix of the objectID of a split record.
+     */
+    private static final Pattern SPLIT_SUFFIX = Pattern.compile("_\\d+$");
+
+    private final BundleContext bundleContext;
+
+    private final Counter suppressed;
+
+    private final Counter passed;
+
+    /**
+     * Current configuration, replaced as a whole on modification. Every request works on the snapshot it read first.
+     */
+    private volatile Settings settings;
+
+    @Activate
+    public UnchangedRecordFilter(@Reference MetricsService metricsService,
+                                 BundleContext bundleContext,
+                                 Config config) {
+        this.bundleContext = bundleContext;
+        this.suppressed = metricsService.counter(METRIC_PREFIX + "suppressed");
+        this.passed = metricsService.counter(METRIC_PREFIX + "passed");
+        this.settings = new Settings(config, null, bundleContext);
+    }
+
+    /**
+     * Applies a new configuration in place, keeping the loaded digests while the filter stays enabled.
+     */
+    @Modified
+    protected synchronized void modified(Config config) {
+        Settings previous = this.settings;
+        this.settings = new Settings(config, previous, this.bundleContext);
+        if (previous.store != null && this.settings.store == null) {
+            previous.store.close();
+        }
+    }
+
+    @Deactivate
+    protected synchronized void deactivate() {
+        if (this.settings.store != null) {
+            this.settings.store.close();
+        }
+    }
+
+    @Override
+    public void augmentAlgoliaRequest(AlgoliaRequest request, Asset asset) {
+        this.removeUnchangedRecords(request);
+    }
+
+    @Override
+    public void augmentAlgoliaRequest(AlgoliaRequest request, Page page) {
+        this.removeUnchangedRecords(request);
+    }
+
+    @Override
+    public void delivered(AlgoliaRequest request) {
+        Settings current = this.settings;
+        if (current.store == null) {
+            return;
+        }
+        for (AlgoliaRecord record : request.getAlgoliaRecords()) {
+            String digest = digest(record, current.version);
+            if (digest != null) {
+                current.store.confirm(record.getObjectID(), path(request, record), digest);
+            }
+        }
+    }
+
+    @Override
+    public void deleted(String objectID) {
+        Settings current = this.settings;
+        if (current.store != null) {
+            current.store.remove(objectID);
+        }
+    }
+
+    /**
+     * Forgets the records built from deactivated and deleted pages and assets, which the connector deletes from the
+     * index.
+     */
+    @Override
+    public void handleEvent(Event event) {
+        Settings current = this.settings;
+        ReplicationAction action = ReplicationAction.fromEvent(event);
+        if (current.store != null && action != null && (action.getType() == ReplicationActionType.DEACTIVATE
+                || action.getType() == ReplicationActionType.DELETE)) {
+            for (String path : action.getPaths()) {
+                current.store.removePath(path);
+            }
+        }
+    }
+
+    private void removeUnchangedRecords(AlgoliaRequest request) {
+        Settings current = this.settings;
+        List<AlgoliaRecord> records = request.getAlgoliaRecords();
+        ExtenderExecution execution = ExtenderExecution.begin(this.getClass(),
+                records.isEmpty() ? null : path(request, records.get(0)), current.eventThreshold);
+        try {
+            this.removeUnchangedRecords(current, request, execution);
+        } finally {
+            execution.end();
+        }
+    }
+
+    private void removeUnchangedRecords(Settings current, AlgoliaRequest request, ExtenderExecution execution) {
+        if (current.store == null) {
+            execution.cacheOutcome(ExtenderExecution.CACHE_DISABLED);
+            return;
+        }
+        Set<String> objectIDs = request.getAlgoliaRecords().stream()
+                .map(AlgoliaRecord::getObjectID)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // Split records no longer part of the request are deleted from the index by the connector.
+        objectIDs.stream()
+                .map(objectID -> SPLIT_SUFFIX.matcher(objectID).replaceFirst(""))
+                .distinct()
+                .forEach(objectID -> current.store.retain(objectID, objectIDs));
+        boolean sent = false;
+        Iterator<AlgoliaRecord> records = request.getAlgoliaRecords().iterator();
+        while (records.hasNext()) {
+            AlgoliaRecord record = records.next();
+            String digest = digest(record, current.version);
+            if (digest == null || !current.store.isUnchanged(record.getObjectID(), digest)) {
+                if (record.getObjectID() != null) {
+                    current.store.invalidate(record.getObjectID());
+                }
+                sent = true;
+                this.passed.increment();
+            } else {
+                LOGGER.debug("Record: {} is unchanged, not sending it.", record.getObjectID());
+                this.suppressed.increment();
+                records.remove();
+            }
+        }
+        if (sent || objectIDs.isEmpty()) {
+            execution.cacheOutcome(ExtenderExecution.CACHE_MISS);
+        } else {
+            // Every record of the request is unchanged, nothing is sent.
+            execution.cacheOutcome(ExtenderExecution.CACHE_HIT);
+        }
+    }
+
+    /**
+     * Path of the page or asset the record was built from, null if unknown.
+     */
+    private static String path(AlgoliaRequest request, AlgoliaRecord record) {
+        Resource resource = request.getResource();
+        if (resource != null) {
+            return resource.getPath();
+        }
+        Object path = record.get(ATTRIBUTE_PATH);
+        return path instanceof String ? (String) path : null;
+    }
+
+    /**
+     * Digest of the record serialized with its attributes sorted by name, or null if it can not be serialized.
+     */
+    private static String digest(AlgoliaRecord record, String version) {
+        try {
+            return DigestUtils.sha256Hex(version + '\n' + MAPPER.writeValueAsString(record));
+        } catch (JsonProcessingException ex) {
+            LOGGER.debug("Could not serialize record: {}, sending it.", record.getObjectID(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the configuration together with the state derived from it.
+     */
+    private static final class Settings {
+
+        private final RecordFingerprintStore store;
+
+        private final String version;
+
+        private final long eventThreshold;
+
+        private Settings(Config config, Settings previous, BundleContext bundleContext) {
+            long maxAge = TimeUnit.HOURS.toMillis(config.max_age());
+            if (!config.enabled()) {
+                this.store = null;
+            } else if (previous != null && previous.store != null) {
+                // A single store owns the journal, it takes over the new maximum age.
+                this.store = previous.store;
+                this.store.setMaxAge(maxAge);
+            } else {
+                this.store = new RecordFingerprintStore(bundleContext.getDataFile(JOURNAL), maxAge, Clock.systemUTC());
+            }
+            this.version = config.fingerprint_version();
+            this.eventThreshold = config.event_threshold();
+        }
+    }
+
+    // OCD - processed by BND maven plugin.
+
+    @ObjectClassDefinition(
+            name = "UnchangedRecordFilter Configuration",
+            description = "Configuration for UnchangedRecordFilter."
+    )
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Enabled",
+                description = "Drop the records identical to the version last delivered to Algolia, as reported "
+                        + "to the RecordDeliveryListener service by the code sending them."
+        )
+        boolean enabled() default false; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Max Age",
+                description = "Hours after which an unchanged record is sent again, so that the index recovers "
+                        + "from records lost or changed outside of AEM. 0 disables the limit."
+        )
+        int max_age() default 168; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Fingerprint Version",
+                description = "Change this value to send every record again, e.g. after the index was cleared."
+        )
+        String fingerprint_version() default "1"; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Event Threshold",
+                description = "Minimum duration (in milliseconds) of the record filtering recorded as JDK "
+                        + "Flight Recorder events while a recording is running. -1 disables the events."
+        )
+        long event_threshold() default 10; // NOSONAR
+    }
+}
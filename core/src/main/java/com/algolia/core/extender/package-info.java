@@ -0,0 +1,7 @@
+/**
+ * Feedback from the delivery of Algolia requests to the request extenders.
+ */
+@Version("1.0.0")
+package com.algolia.core.extender;
+
+import org.osgi.annotation.versioning.Version;
@@ -0,0 +1,24 @@
+package com.algolia.core.reindex;
+
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Receives the {@link AlgoliaRequest}s augmented by the extender chain during a bulk reindex, e.g. to send their
+ * records to Algolia. Once every consumer accepted a request, its records are reported as delivered to the
+ * {@link com.algolia.core.extender.RecordDeliveryListener}s.
+ *
+ * @since 3.6.0
+ */
+@ConsumerType
+public interface BulkReindexRequestConsumer {
+
+    /**
+     * Called once for every page or asset after all registered extenders have augmented its request.
+     * Implementations are called concurrently from several reindex workers. Returning normally means the records
+     * were delivered, a consumer failing to deliver them throws instead.
+     *
+     * @param request the augmented request
+     */
+    void accept(AlgoliaRequest request);
+}
@@ -0,0 +1,64 @@
+package com.algolia.core.reindex.internal;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Additive increase / multiplicative decrease limit for the number of resources processed concurrently.
+ * <p>
+ * After every batch of completed resources the limit grows by one while the system load and the average extender
+ * latency stay below their targets, and is halved as soon as either of them is exceeded.
+ *
+ * @since 3.6.0
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private final int minConcurrency;
+
+    private final int maxConcurrency;
+
+    private final long targetLatencyMillis;
+
+    private final double maxLoadFactor;
+
+    private final DoubleSupplier loadFactor;
+
+    private int concurrency;
+
+    /**
+     * @param minConcurrency      lower bound of the limit
+     * @param maxConcurrency      upper bound of the limit
+     * @param targetLatencyMillis average extender latency per resource above which the limit is decreased
+     * @param maxLoadFactor       system load per processor above which the limit is decreased
+     * @param loadFactor          supplier of the current system load per processor, negative if unavailable
+     */
+    AdaptiveConcurrencyLimiter(int minConcurrency, int maxConcurrency, long targetLatencyMillis,
+                               double maxLoadFactor, DoubleSupplier loadFactor) {
+        this.minConcurrency = Math.max(1, minConcurrency);
+        this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.maxLoadFactor = maxLoadFactor;
+        this.loadFactor = loadFactor;
+        this.concurrency = this.minConcurrency;
+    }
+
+    int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Adjusts the limit after a batch.
+     *
+     * @param averageLatencyMillis average extender latency per resource observed in the batch
+     * @return the new limit
+     */
+    int onBatchCompleted(long averageLatencyMillis) {
+        double load = this.loadFactor.getAsDouble();
+        boolean overloaded = load > this.maxLoadFactor || averageLatencyMillis > this.targetLatencyMillis;
+        if (overloaded) {
+            this.concurrency = Math.max(this.minConcurrency, this.concurrency / 2);
+        } else {
+            this.concurrency = Math.min(this.maxConcurrency, this.concurrency + 1);
+        }
+        return this.concurrency;
+    }
+}
@@ -0,0 +1,159 @@
+package com.algolia.core.reindex.internal;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Persists the progress of bulk reindex jobs, one properties file per root path, so that a paused, stopped or
+ * interrupted job continues after the last resource of its completed prefix.
+ *
+ * @since 3.6.0
+ */
+final class BulkReindexCheckpoints {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final String SUFFIX = ".properties";
+
+    private static final String PN_ROOT = "root";
+
+    private static final String PN_LAST_PATH = "lastPath";
+
+    private static final String PN_PROCESSED = "processed";
+
+    private static final String PN_FAILED = "failed";
+
+    private static final String PN_ELAPSED = "elapsed";
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory holding the checkpoints, may be null if the bundle has no data area
+     */
+    BulkReindexCheckpoints(File directory) {
+        this.directory = directory == null ? null : directory.toPath();
+    }
+
+    /**
+     * Progress of a bulk reindex job.
+     */
+    static final class Checkpoint {
+
+        final String root;
+
+        final String lastPath;
+
+        final long processed;
+
+        final long failed;
+
+        final long elapsedMillis;
+
+        Checkpoint(String root, String lastPath, long processed, long failed, long elapsedMillis) {
+            this.root = root;
+            this.lastPath = lastPath;
+            this.processed = processed;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return this.root + ": " + this.processed + " processed, " + this.failed + " failed, last " + this.lastPath;
+        }
+    }
+
+    Checkpoint get(String root) {
+        Path file = this.file(root);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return read(file);
+    }
+
+    void save(Checkpoint checkpoint) {
+        Path file = this.file(checkpoint.root);
+        if (file == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(PN_ROOT, checkpoint.root);
+        properties.setProperty(PN_LAST_PATH, checkpoint.lastPath);
+        properties.setProperty(PN_PROCESSED, String.valueOf(checkpoint.processed));
+        properties.setProperty(PN_FAILED, String.valueOf(checkpoint.failed));
+        properties.setProperty(PN_ELAPSED, String.valueOf(checkpoint.elapsedMillis));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(this.directory);
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                properties.store(out, null);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not save bulk reindex checkpoint: {}", checkpoint, ex);
+        }
+    }
+
+    void remove(String root) {
+        Path file = this.file(root);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not remove bulk reindex checkpoint of: {}", root, ex);
+        }
+    }
+
+    List<Checkpoint> getAll() {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        if (this.directory == null || !Files.isDirectory(this.directory)) {
+            return checkpoints;
+        }
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .map(BulkReindexCheckpoints::read)
+                    .forEach(checkpoint -> {
+                        if (checkpoint != null) {
+                            checkpoints.add(checkpoint);
+                        }
+                    });
+        } catch (IOException ex) {
+            LOGGER.warn("Could not list bulk reindex checkpoints in: {}", this.directory, ex);
+        }
+        return checkpoints;
+    }
+
+    private Path file(String root) {
+        return this.directory == null ? null : this.directory.resolve(DigestUtils.sha1Hex(root) + SUFFIX);
+    }
+
+    private static Checkpoint read(Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            return new Checkpoint(properties.getProperty(PN_ROOT), properties.getProperty(PN_LAST_PATH),
+                    Long.parseLong(properties.getProperty(PN_PROCESSED, "0")),
+                    Long.parseLong(properties.getProperty(PN_FAILED, "0")),
+                    Long.parseLong(properties.getProperty(PN_ELAPSED, "0")));
+        } catch (IOException | NumberFormatException ex) {
+            LOGGER.warn("Could not read bulk reindex checkpoint: {}", file, ex);
+            return null;
+        }
+    }
+}
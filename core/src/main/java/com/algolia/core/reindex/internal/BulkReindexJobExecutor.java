@@ -0,0 +1,540 @@
+package com.algolia.core.reindex.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.connector.core.extender.AlgoliaAssetRequestExtender;
+import com.algolia.connector.core.extender.AlgoliaPageRequestExtender;
+import com.algolia.core.extender.RecordDeliveryListener;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.metrics.Counter;
+import org.apache.sling.commons.metrics.Meter;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.commons.osgi.Order;
+import org.apache.sling.commons.osgi.RankedServices;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.apache.sling.event.jobs.consumer.JobExecutor;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.component.annotations.ReferencePolicyOption;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sling job walking a page or asset tree and running every resource through the registered
+ * {@link AlgoliaPageRequestExtender}s and {@link AlgoliaAssetRequestExtender}s.
+ * <p>
+ * The walk stays up to {@code queue_size} resources ahead of the workers. Pages and small assets are processed
+ * before PDFs and large assets, which have their own lower concurrency limits so that they never occupy all
+ * workers, and cheap resources found later keep overtaking expensive ones still running.
+ * <p>
+ * The number of resources processed concurrently is adapted after every batch of completed resources to the
+ * system load and to the observed extender latency. Progress is checkpointed at the same time, after the last
+ * resource all resources walked before are complete as well, so a paused, stopped or interrupted job continues
+ * where it left off when it is started again for the same root path.
+ *
+ * @since 3.6.0
+ */
+@Component(
+        service = JobExecutor.class,
+        property = JobExecutor.PROPERTY_TOPICS + "=" + BulkReindexJobExecutor.TOPIC
+)
+@Designate(ocd = BulkReindexJobExecutor.Config.class)
+public class BulkReindexJobExecutor implements JobExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String TOPIC = "com/algolia/extensions/bulkreindex";
+
+    static final String PN_PATH = "path";
+
+    static final String CHECKPOINTS_DIRECTORY = "bulk-reindex";
+
+    static final String SUBSERVICE = "algolia-bulk-reindex";
+
+    private static final String METRIC_PREFIX = "algolia.bulkReindex.";
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    /**
+     * Interval in which the job checks whether it was stopped while waiting for the workers.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Extenders in descending service ranking, final-stage extenders such as the unchanged record filter run last.
+     */
+    private final RankedServices<AlgoliaPageRequestExtender> pageExtenders = new RankedServices<>(Order.DESCENDING);
+
+    private final RankedServices<AlgoliaAssetRequestExtender> assetExtenders =
+            new RankedServices<>(Order.DESCENDING);
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private final List<BulkReindexRequestConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    private final List<RecordDeliveryListener> deliveryListeners = new CopyOnWriteArrayList<>();
+
+    private final ResourceResolverFactory resolverFactory;
+
+    private final BulkReindexCheckpoints checkpoints;
+
+    private final ExecutorService workers;
+
+    private final Config config;
+
+    private final ResourceCostEstimator costEstimator;
+
+    private final int[] laneLimits;
+
+    private final Meter processedMeter;
+
+    private final Counter failedCounter;
+
+    @Activate
+    public BulkReindexJobExecutor(@Reference ResourceResolverFactory resolverFactory,
+                                  @Reference MetricsService metricsService,
+                                  BundleContext bundleContext,
+                                  Config config) {
+        this.resolverFactory = resolverFactory;
+        this.checkpoints = new BulkReindexCheckpoints(bundleContext.getDataFile(CHECKPOINTS_DIRECTORY));
+        this.config = config;
+        this.costEstimator = new ResourceCostEstimator(config.medium_asset_size() * BYTES_PER_MEGABYTE,
+                config.large_asset_size() * BYTES_PER_MEGABYTE, config.large_page_count());
+        this.laneLimits = new int[]{config.max_concurrency(), config.medium_lane_concurrency(),
+                config.large_lane_concurrency()};
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, config.max_concurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "algolia-bulk-reindex-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.processedMeter = metricsService.meter(METRIC_PREFIX + "processed");
+        this.failedCounter = metricsService.counter(METRIC_PREFIX + "failed");
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        this.workers.shutdownNow();
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    protected void bindPageExtender(AlgoliaPageRequestExtender extender, Map<String, Object> properties) {
+        this.pageExtenders.bind(extender, properties);
+    }
+
+    protected void unbindPageExtender(AlgoliaPageRequestExtender extender, Map<String, Object> properties) {
+        this.pageExtenders.unbind(extender, properties);
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC,
+            policyOption = ReferencePolicyOption.GREEDY)
+    protected void bindAssetExtender(AlgoliaAssetRequestExtender extender, Map<String, Object> properties) {
+        this.assetExtenders.bind(extender, properties);
+    }
+
+    protected void unbindAssetExtender(AlgoliaAssetRequestExtender extender, Map<String, Object> properties) {
+        this.assetExtenders.unbind(extender, properties);
+    }
+
+    @Override
+    public JobExecutionResult process(Job job, JobExecutionContext context) {
+        String root = job.getProperty(PN_PATH, String.class);
+        if (StringUtils.isBlank(root)) {
+            return context.result().message("No path to reindex given.").cancelled();
+        }
+        try (ResourceResolver resolver = this.resolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+            Resource rootResource = resolver.getResource(root);
+            if (rootResource == null) {
+                return context.result().message("Path to reindex does not exist: " + root).cancelled();
+            }
+            return this.reindex(rootResource, context);
+        } catch (LoginException ex) {
+            LOGGER.error("Could not open service resource resolver for subservice: {}", SUBSERVICE, ex);
+            return context.result().message("Could not open service resource resolver.").failed();
+        }
+    }
+
+    private JobExecutionResult reindex(Resource rootResource, JobExecutionContext context) {
+        String root = rootResource.getPath();
+        BulkReindexCheckpoints.Checkpoint checkpoint = this.checkpoints.get(root);
+        Iterator<String> paths = new ReindexableResources(rootResource);
+        long processed = 0;
+        long failed = 0;
+        long previousElapsedMillis = 0;
+        if (checkpoint != null
+                && rootResource.getResourceResolver().getResource(checkpoint.lastPath) != null
+                && skipUntil(paths, checkpoint.lastPath)) {
+            processed = checkpoint.processed;
+            failed = checkpoint.failed;
+            previousElapsedMillis = checkpoint.elapsedMillis;
+            context.log("Resuming reindex of {0} after {1}", root, checkpoint.lastPath);
+        } else {
+            paths = new ReindexableResources(rootResource);
+        }
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(this.config.min_concurrency(),
+                this.config.max_concurrency(), this.config.target_latency(), this.config.max_load_factor(),
+                BulkReindexJobExecutor::loadFactor);
+        PriorityLaneScheduler<ReindexProgress.Item> scheduler = new PriorityLaneScheduler<>(this.laneLimits,
+                this.config.lane_aging(), System::nanoTime);
+        scheduler.setConcurrency(limiter.getConcurrency());
+        int workerCount = Math.max(1, this.config.max_concurrency());
+        ReindexProgress progress = new ReindexProgress(processed, failed, workerCount);
+        List<Future<?>> workerFutures = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workerFutures.add(this.workers.submit(() -> this.processScheduled(scheduler, progress)));
+        }
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                if (context.isStopped()) {
+                    scheduler.cancel();
+                    awaitWorkers(workerFutures);
+                    this.saveCheckpoint(progress, root, previousElapsedMillis, start);
+                    return context.result().message("Reindex of " + root + " paused after "
+                            + progress.getProcessed() + " resources.").cancelled();
+                }
+                this.schedule(paths, rootResource.getResourceResolver(), scheduler, progress);
+                if (!paths.hasNext()) {
+                    scheduler.close();
+                }
+                boolean batchCompleted = progress.await(this.config.batch_size(), POLL_INTERVAL_MILLIS);
+                if (!paths.hasNext() && progress.pending() == 0) {
+                    break;
+                }
+                if (!progress.hasWorkers()) {
+                    // The checkpoint stays before the resources left behind, so that a retry processes them.
+                    int unprocessed = progress.pending();
+                    progress.fail(unprocessed);
+                    this.saveCheckpoint(progress, root, previousElapsedMillis, start);
+                    String message = "Reindex of " + root + " failed, no worker is left to process "
+                            + unprocessed + " scheduled resources.";
+                    LOGGER.error(message);
+                    return context.result().message(message).failed();
+                }
+                if (batchCompleted) {
+                    limiter.onBatchCompleted(progress.takeAverageLatencyMillis());
+                    scheduler.setConcurrency(limiter.getConcurrency());
+                    long elapsedMillis = this.saveCheckpoint(progress, root, previousElapsedMillis, start);
+                    context.log("Processed {0} resources ({1} failed) at {2} resources/s, concurrency {3}",
+                            progress.getProcessed(), progress.getFailed(),
+                            throughput(progress.getProcessed(), elapsedMillis), limiter.getConcurrency());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            scheduler.cancel();
+            this.saveCheckpoint(progress, root, previousElapsedMillis, start);
+            return context.result().message("Reindex of " + root + " interrupted after "
+                    + progress.getProcessed() + " resources.").cancelled();
+        } finally {
+            // Lets the workers exit whatever the outcome.
+            scheduler.cancel();
+        }
+        long elapsedMillis = previousElapsedMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        this.checkpoints.remove(root);
+        String message = "Reindexed " + progress.getProcessed() + " resources (" + progress.getFailed()
+                + " failed) under " + root + " in " + TimeUnit.MILLISECONDS.toSeconds(elapsedMillis) + "s, "
+                + throughput(progress.getProcessed(), elapsedMillis) + " resources/s.";
+        LOGGER.info(message);
+        return context.result().message(message).succeeded();
+    }
+
+    /**
+     * Walks ahead of the workers until {@code queue_size} resources are scheduled and not part of the completed
+     * prefix, so that cheap resources found later can overtake expensive ones still running or queued.
+     */
+    private void schedule(Iterator<String> paths, ResourceResolver resolver,
+                          PriorityLaneScheduler<ReindexProgress.Item> scheduler, ReindexProgress progress) {
+        while (progress.scheduled() < Math.max(1, this.config.queue_size()) && paths.hasNext()) {
+            String path = paths.next();
+            Resource resource = resolver.getResource(path);
+            if (resource != null) {
+                scheduler.add(progress.schedule(path), this.costEstimator.estimate(resource));
+            }
+        }
+    }
+
+    /**
+     * Saves the checkpoint of the completed prefix, if any.
+     *
+     * @return the elapsed time of the job including previous runs
+     */
+    private long saveCheckpoint(ReindexProgress progress, String root, long previousElapsedMillis, long start) {
+        long elapsedMillis = previousElapsedMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        BulkReindexCheckpoints.Checkpoint checkpoint = progress.checkpoint(root, elapsedMillis);
+        if (checkpoint != null) {
+            this.checkpoints.save(checkpoint);
+        }
+        return elapsedMillis;
+    }
+
+    private Void processScheduled(PriorityLaneScheduler<ReindexProgress.Item> scheduler, ReindexProgress progress) {
+        // Resource resolvers are not thread safe, every worker reads the content through its own.
+        try (ResourceResolver resolver = this.resolverFactory.getServiceResourceResolver(
+                Collections.singletonMap(ResourceResolverFactory.SUBSERVICE, SUBSERVICE))) {
+            PriorityLaneScheduler.Ticket<ReindexProgress.Item> ticket;
+            while ((ticket = scheduler.take()) != null) {
+                try {
+                    this.process(resolver, ticket.task, progress);
+                } finally {
+                    scheduler.complete(ticket);
+                }
+            }
+        } catch (LoginException ex) {
+            LOGGER.error("Could not open service resource resolver for subservice: {}", SUBSERVICE, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            progress.workerExited();
+        }
+        return null;
+    }
+
+    private void process(ResourceResolver resolver, ReindexProgress.Item item, ReindexProgress progress) {
+        Resource resource = resolver.getResource(item.path);
+        if (resource == null) {
+            progress.skip(item);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean success = true;
+        try {
+            this.augment(resource);
+            this.processedMeter.mark();
+        } catch (RuntimeException ex) {
+            LOGGER.error("Could not reindex resource: {}", item.path, ex);
+            this.failedCounter.increment();
+            success = false;
+        }
+        progress.complete(item, success, System.nanoTime() - start);
+    }
+
+    private void augment(Resource resource) {
+        AlgoliaRequest request = ReindexRequests.create(resource, resource.getPath());
+        if (isPage(resource)) {
+            Page page = resource.adaptTo(Page.class);
+            for (AlgoliaPageRequestExtender extender : this.pageExtenders) {
+                extender.augmentAlgoliaRequest(request, page);
+            }
+        } else {
+            Asset asset = resource.adaptTo(Asset.class);
+            for (AlgoliaAssetRequestExtender extender : this.assetExtenders) {
+                extender.augmentAlgoliaRequest(request, asset);
+            }
+        }
+        ReindexRequests.deliver(request, this.consumers, this.deliveryListeners);
+    }
+
+    static Map<String, Object> jobProperties(String path) {
+        return Collections.singletonMap(PN_PATH, path);
+    }
+
+    private static boolean isPage(Resource resource) {
+        return resource.isResourceType(NameConstants.NT_PAGE);
+    }
+
+    private static boolean isAsset(Resource resource) {
+        return resource.isResourceType(DamConstants.NT_DAM_ASSET);
+    }
+
+    private static boolean skipUntil(Iterator<String> paths, String lastPath) {
+        while (paths.hasNext()) {
+            if (paths.next().equals(lastPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitWorkers(List<Future<?>> workerFutures) {
+        for (Future<?> future : workerFutures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                LOGGER.error("Bulk reindex worker failed.", ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static long throughput(long processed, long elapsedMillis) {
+        return elapsedMillis > 0 ? processed * 1000 / elapsedMillis : processed;
+    }
+
+    private static double loadFactor() {
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        return load < 0 ? load : load / Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Depth-first iterator over the paths of the pages and assets below (and including) a root resource.
+     */
+    private static final class ReindexableResources implements Iterator<String> {
+
+        private final Deque<Iterator<Resource>> stack = new ArrayDeque<>();
+
+        private String next;
+
+        private ReindexableResources(Resource root) {
+            this.stack.push(Collections.singletonList(root).iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null && !this.stack.isEmpty()) {
+                Iterator<Resource> children = this.stack.peek();
+                if (!children.hasNext()) {
+                    this.stack.pop();
+                    continue;
+                }
+                Resource resource = children.next();
+                if (isAsset(resource)) {
+                    this.next = resource.getPath();
+                } else if (!StringUtils.startsWithAny(resource.getName(), "jcr:", "rep:")) {
+                    if (isPage(resource)) {
+                        this.next = resource.getPath();
+                    }
+                    this.stack.push(resource.listChildren());
+                }
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = this.next;
+            this.next = null;
+            return path;
+        }
+    }
+
+    // OCD - processed by BND maven plugin.
+
+    @ObjectClassDefinition(
+            name = "Algolia Bulk Reindex Job Configuration",
+            description = "Configuration for the job reindexing page and asset trees."
+    )
+    public @interface Config {
+
+        @AttributeDefinition(
+                name = "Batch Size",
+                description = "Number of resources processed between two concurrency adjustments and checkpoints."
+        )
+        int batch_size() default 50; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Queue Size",
+                description = "Number of resources walked ahead of the oldest one not processed yet, and "
+                        + "scheduled by estimated cost."
+        )
+        int queue_size() default 500; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Min Concurrency",
+                description = "Minimum number of resources processed concurrently."
+        )
+        int min_concurrency() default 1; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Max Concurrency",
+                description = "Maximum number of resources processed concurrently."
+        )
+        int max_concurrency() default 4; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Target Latency",
+                description = "Average extender latency per resource (in milliseconds) above which "
+                        + "the concurrency is reduced."
+        )
+        long target_latency() default 2000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Max Load Factor",
+                description = "System load average per processor above which the concurrency is reduced."
+        )
+        double max_load_factor() default 0.75; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Medium Lane Concurrency",
+                description = "Maximum number of PDFs and medium sized assets processed concurrently."
+        )
+        int medium_lane_concurrency() default 2; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Large Lane Concurrency",
+                description = "Maximum number of large assets processed concurrently."
+        )
+        int large_lane_concurrency() default 1; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Lane Aging",
+                description = "Waiting time (in milliseconds) after which a resource is scheduled like one of "
+                        + "the next cheaper lane. 0 disables aging."
+        )
+        long lane_aging() default 30000; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Medium Asset Size",
+                description = "Size (in megabytes) from which an asset is scheduled in the medium lane. "
+                        + "PDFs always are."
+        )
+        long medium_asset_size() default 1; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Large Asset Size",
+                description = "Size (in megabytes) from which an asset is scheduled in the large lane."
+        )
+        long large_asset_size() default 20; // NOSONAR
+
+        @AttributeDefinition(
+                name = "Large Page Count",
+                description = "Number of pages from which a PDF is scheduled in the large lane."
+        )
+        long large_page_count() default 200; // NOSONAR
+    }
+}
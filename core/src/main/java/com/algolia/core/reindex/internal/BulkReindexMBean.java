@@ -0,0 +1,25 @@
+package com.algolia.core.reindex.internal;
+
+import com.adobe.granite.jmx.annotation.Description;
+import com.adobe.granite.jmx.annotation.Name;
+
+/**
+ * JMX operations controlling the bulk reindex jobs.
+ *
+ * @since 3.6.0
+ */
+@Description("Algolia Bulk Reindex")
+public interface BulkReindexMBean {
+
+    @Description("Starts reindexing the pages and assets below the given path from the beginning.")
+    String start(@Name("path") @Description("Root path, e.g. /content/dam/site") String path);
+
+    @Description("Pauses the reindex of the given path, keeping its checkpoint.")
+    String pause(@Name("path") @Description("Root path") String path);
+
+    @Description("Resumes the reindex of the given path after its last checkpoint.")
+    String resume(@Name("path") @Description("Root path") String path);
+
+    @Description("Progress of the paused, interrupted or running reindex jobs.")
+    String[] getCheckpoints();
+}
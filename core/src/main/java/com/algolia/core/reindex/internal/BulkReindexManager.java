@@ -0,0 +1,87 @@
+package com.algolia.core.reindex.internal;
+
+import com.adobe.granite.jmx.annotation.AnnotatedStandardMBean;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import java.util.Collection;
+
+import static com.algolia.core.reindex.internal.BulkReindexJobExecutor.CHECKPOINTS_DIRECTORY;
+import static com.algolia.core.reindex.internal.BulkReindexJobExecutor.TOPIC;
+import static com.algolia.core.reindex.internal.BulkReindexJobExecutor.jobProperties;
+
+/**
+ * JMX bean starting, pausing and resuming {@link BulkReindexJobExecutor} jobs.
+ * <p>
+ * Pausing stops the running job, which keeps its checkpoint. Resuming adds a new job for the same path, which
+ * continues after the checkpoint.
+ *
+ * @since 3.6.0
+ */
+@Component(
+        service = DynamicMBean.class,
+        property = "jmx.objectname=com.algolia.extensions:type=BulkReindex"
+)
+public class BulkReindexManager extends AnnotatedStandardMBean implements BulkReindexMBean {
+
+    private final JobManager jobManager;
+
+    private final BulkReindexCheckpoints checkpoints;
+
+    @Activate
+    public BulkReindexManager(@Reference JobManager jobManager, BundleContext bundleContext)
+            throws NotCompliantMBeanException {
+        super(BulkReindexMBean.class);
+        this.jobManager = jobManager;
+        this.checkpoints = new BulkReindexCheckpoints(bundleContext.getDataFile(CHECKPOINTS_DIRECTORY));
+    }
+
+    @Override
+    public String start(String path) {
+        if (!this.findJobs(path, JobManager.QueryType.ALL).isEmpty()) {
+            return "A reindex of " + path + " is already queued or running.";
+        }
+        this.checkpoints.remove(path);
+        return "Started reindex job: " + this.jobManager.addJob(TOPIC, jobProperties(path)).getId();
+    }
+
+    @Override
+    public String pause(String path) {
+        int count = 0;
+        for (Job job : this.findJobs(path, JobManager.QueryType.ACTIVE)) {
+            this.jobManager.stopJobById(job.getId());
+            count++;
+        }
+        for (Job job : this.findJobs(path, JobManager.QueryType.QUEUED)) {
+            this.jobManager.removeJobById(job.getId());
+            count++;
+        }
+        return count > 0 ? "Paused reindex of " + path + "." : "No reindex of " + path + " is queued or running.";
+    }
+
+    @Override
+    public String resume(String path) {
+        if (!this.findJobs(path, JobManager.QueryType.ALL).isEmpty()) {
+            return "A reindex of " + path + " is already queued or running.";
+        }
+        return "Resumed reindex job: " + this.jobManager.addJob(TOPIC, jobProperties(path)).getId();
+    }
+
+    @Override
+    public String[] getCheckpoints() {
+        return this.checkpoints.getAll().stream()
+                .map(BulkReindexCheckpoints.Checkpoint::toString)
+                .toArray(String[]::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Job> findJobs(String path, JobManager.QueryType type) {
+        return this.jobManager.findJobs(type, TOPIC, -1, jobProperties(path));
+    }
+}
@@ -0,0 +1,226 @@
+package com.algolia.core.reindex.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Work queue handing out cheap work before expensive work.
+ * <p>
+ * Every task is queued in the {@link Lane} matching its estimated cost and each lane has its own concurrency limit,
+ * so that expensive tasks can never occupy all workers. Tasks are taken from the cheapest lane with a free slot,
+ * first-in first-out within a lane. A waiting task is promoted by one lane per aging interval, so that expensive
+ * tasks are not starved by a steady stream of cheap ones.
+ * <p>
+ * Tasks can be added while others are taken, until the scheduler is {@link #close() closed}. An overall
+ * concurrency limit caps the number of running tasks across all lanes.
+ *
+ * @param <T> the type of the tasks
+ * @since 3.6.0
+ */
+final class PriorityLaneScheduler<T> {
+
+    /**
+     * Estimated cost of a task, cheapest first.
+     */
+    enum Lane {
+        SMALL,
+        MEDIUM,
+        LARGE
+    }
+
+    private final Deque<Ticket<T>>[] queues;
+
+    private final int[] limits;
+
+    private final int[] running;
+
+    private final long agingNanos;
+
+    private final LongSupplier nanoTime;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition slotReleased = this.lock.newCondition();
+
+    private int concurrency = Integer.MAX_VALUE;
+
+    private int runningTotal;
+
+    private boolean closed;
+
+    /**
+     * @param limits      the concurrency limit of every lane, in {@link Lane} order
+     * @param agingMillis waiting time after which a task is promoted by one lane, 0 disables aging
+     * @param nanoTime    the time source used for aging
+     */
+    @SuppressWarnings("unchecked")
+    PriorityLaneScheduler(int[] limits, long agingMillis, LongSupplier nanoTime) {
+        Lane[] lanes = Lane.values();
+        this.queues = new Deque[lanes.length];
+        this.limits = new int[lanes.length];
+        this.running = new int[lanes.length];
+        for (Lane lane : lanes) {
+            this.queues[lane.ordinal()] = new ArrayDeque<>();
+            this.limits[lane.ordinal()] = Math.max(1, limits[lane.ordinal()]);
+        }
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @throws IllegalStateException if the scheduler is closed
+     */
+    void add(T task, Lane lane) {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new IllegalStateException("Scheduler is closed.");
+            }
+            this.queues[lane.ordinal()].addLast(new Ticket<>(task, lane, this.nanoTime.getAsLong()));
+            this.slotReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next task, waiting while the queue is empty or only tasks of lanes at their concurrency limit are
+     * left. {@link #complete(Ticket)} has to be called once the task is processed.
+     *
+     * @return the next task or null if the scheduler is closed and empty
+     */
+    Ticket<T> take() throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (true) {
+                if (this.closed && this.isEmpty()) {
+                    return null;
+                }
+                Ticket<T> ticket = this.runningTotal < this.concurrency ? this.next() : null;
+                if (ticket != null) {
+                    this.queues[ticket.lane.ordinal()].removeFirst();
+                    this.running[ticket.lane.ordinal()]++;
+                    this.runningTotal++;
+                    return ticket;
+                }
+                this.slotReleased.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void complete(Ticket<T> ticket) {
+        this.lock.lock();
+        try {
+            this.running[ticket.lane.ordinal()]--;
+            this.runningTotal--;
+            this.slotReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the maximum number of tasks running at a time across all lanes.
+     */
+    void setConcurrency(int concurrency) {
+        this.lock.lock();
+        try {
+            this.concurrency = Math.max(1, concurrency);
+            this.slotReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Accepts no further tasks, {@link #take()} returns null once the queued ones are taken.
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.slotReleased.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the scheduler and removes the tasks not taken yet.
+     *
+     * @return the removed tasks
+     */
+    List<T> cancel() {
+        this.lock.lock();
+        try {
+            List<T> removed = new ArrayList<>();
+            for (Deque<Ticket<T>> queue : this.queues) {
+                queue.forEach(ticket -> removed.add(ticket.task));
+                queue.clear();
+            }
+            this.closed = true;
+            this.slotReleased.signalAll();
+            return removed;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Head of the lane with a free slot whose head has the best aged priority, the oldest one on ties.
+     */
+    private Ticket<T> next() {
+        long now = this.nanoTime.getAsLong();
+        Ticket<T> next = null;
+        long nextPriority = Long.MAX_VALUE;
+        for (int lane = 0; lane < this.queues.length; lane++) {
+            Ticket<T> head = this.queues[lane].peekFirst();
+            if (head == null || this.running[lane] >= this.limits[lane]) {
+                continue;
+            }
+            long priority = this.agingNanos > 0 ? lane - (now - head.queuedAt) / this.agingNanos : lane;
+            if (priority < nextPriority || priority == nextPriority && head.queuedAt < next.queuedAt) {
+                next = head;
+                nextPriority = priority;
+            }
+        }
+        return next;
+    }
+
+    private boolean isEmpty() {
+        for (Deque<Ticket<T>> queue : this.queues) {
+            if (!queue.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A task taken from the scheduler.
+     *
+     * @param <T> the type of the task
+     */
+    static final class Ticket<T> {
+
+        final T task;
+
+        final Lane lane;
+
+        private final long queuedAt;
+
+        private Ticket(T task, Lane lane, long queuedAt) {
+            this.task = task;
+            this.lane = lane;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.algolia.core.reindex.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the resources of a bulk reindex which were scheduled but not completed yet, in walk order.
+ * <p>
+ * Resources complete out of order, so the checkpoint is the last resource of the completed prefix: every resource
+ * walked before it is complete as well, while later ones may still be queued or running. The checkpoint counts
+ * only cover that prefix, so that resuming after it neither skips nor counts a resource twice.
+ *
+ * @since 3.6.0
+ */
+final class ReindexProgress {
+
+    private final Deque<Item> items = new ArrayDeque<>();
+
+    private long processed;
+
+    private long failed;
+
+    private String checkpointPath;
+
+    private long checkpointProcessed;
+
+    private long checkpointFailed;
+
+    private int completions;
+
+    private long latencyNanos;
+
+    private int workers;
+
+    /**
+     * @param processed resources processed before a checkpoint the job resumes from
+     * @param failed    resources failed before a checkpoint the job resumes from
+     * @param workers   number of workers taking the scheduled resources
+     */
+    ReindexProgress(long processed, long failed, int workers) {
+        this.processed = processed;
+        this.failed = failed;
+        this.checkpointProcessed = processed;
+        this.checkpointFailed = failed;
+        this.workers = workers;
+    }
+
+    /**
+     * A scheduled resource.
+     */
+    static final class Item {
+
+        final String path;
+
+        private boolean done;
+
+        private boolean success;
+
+        private boolean skipped;
+
+        private Item(String path) {
+            this.path = path;
+        }
+    }
+
+    synchronized Item schedule(String path) {
+        Item item = new Item(path);
+        this.items.addLast(item);
+        return item;
+    }
+
+    synchronized void complete(Item item, boolean success, long latencyNanos) {
+        item.done = true;
+        item.success = success;
+        if (success) {
+            this.processed++;
+        } else {
+            this.failed++;
+        }
+        this.completions++;
+        this.latencyNanos += latencyNanos;
+        this.advance();
+    }
+
+    /**
+     * Completes a resource which no longer exists, without counting it.
+     */
+    synchronized void skip(Item item) {
+        item.done = true;
+        item.skipped = true;
+        this.advance();
+    }
+
+    private void advance() {
+        while (!this.items.isEmpty() && this.items.peekFirst().done) {
+            Item head = this.items.removeFirst();
+            this.checkpointPath = head.path;
+            if (head.skipped) {
+                continue;
+            }
+            if (head.success) {
+                this.checkpointProcessed++;
+            } else {
+                this.checkpointFailed++;
+            }
+        }
+        this.notifyAll();
+    }
+
+    synchronized void workerExited() {
+        this.workers--;
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until {@code completions} resources completed since the last {@link #takeAverageLatencyMillis()},
+     * nothing is pending anymore, all workers exited or the timeout elapsed.
+     *
+     * @return true if at least {@code completions} resources completed since the last average
+     */
+    synchronized boolean await(int completions, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (this.completions < completions && !this.items.isEmpty() && this.workers > 0
+                && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return this.completions >= completions;
+    }
+
+    /**
+     * Returns the average latency of the resources completed since the last call and starts a new average.
+     */
+    synchronized long takeAverageLatencyMillis() {
+        long average = this.completions > 0 ? TimeUnit.NANOSECONDS.toMillis(this.latencyNanos / this.completions) : 0;
+        this.completions = 0;
+        this.latencyNanos = 0;
+        return average;
+    }
+
+    /**
+     * Resources scheduled and not completed yet.
+     */
+    synchronized int pending() {
+        return (int) this.items.stream().filter(item -> !item.done).count();
+    }
+
+    synchronized int scheduled() {
+        return this.items.size();
+    }
+
+    synchronized boolean hasWorkers() {
+        return this.workers > 0;
+    }
+
+    synchronized long getProcessed() {
+        return this.processed;
+    }
+
+    synchronized long getFailed() {
+        return this.failed;
+    }
+
+    /**
+     * Adds resources which will not be processed to the failed ones.
+     */
+    synchronized void fail(int count) {
+        this.failed += count;
+    }
+
+    /**
+     * Creates the checkpoint of the completed prefix, null if no resource completed yet.
+     */
+    synchronized BulkReindexCheckpoints.Checkpoint checkpoint(String root, long elapsedMillis) {
+        return this.checkpointPath == null ? null : new BulkReindexCheckpoints.Checkpoint(root,
+                this.checkpointPath, this.checkpointProcessed, this.checkpointFailed, elapsedMillis);
+    }
+}
@@ -0,0 +1,69 @@
+package com.algolia.core.reindex.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRecord;
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.core.extender.RecordDeliveryListener;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import org.apache.sling.api.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+
+import static com.algolia.connector.core.AlgoliaConstants.ATTRIBUTE_PATH;
+
+/**
+ * Creates the requests handed to the {@link BulkReindexRequestConsumer}s, so that every job reindexing content
+ * starts from the same base record for a path, and hands them over.
+ *
+ * @since 3.6.0
+ */
+public final class ReindexRequests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private ReindexRequests() {
+    }
+
+    /**
+     * Creates a request holding the base record of the given path, keyed by the path and carrying it as attribute.
+     *
+     * @param resource the resource of the path, null if the request is not built from the repository
+     * @param path     the path of the page or asset
+     */
+    public static AlgoliaRequest create(Resource resource, String path) {
+        // AlgoliaConfiguration is not used by the extenders, so we can pass null
+        AlgoliaRequest request = new AlgoliaRequest(resource, null);
+        AlgoliaRecord record = new AlgoliaRecord(path);
+        record.addAttribute(ATTRIBUTE_PATH, path);
+        request.addRecord(record);
+        return request;
+    }
+
+    /**
+     * Hands an augmented request to the consumers and, once every consumer accepted it, reports its records as
+     * delivered to the listeners. Nothing is reported without consumers, as the records were not sent then, nor if
+     * a consumer throws, the exception is passed on.
+     *
+     * @param request   the augmented request
+     * @param consumers the consumers sending the records
+     * @param listeners the listeners notified of the delivery
+     */
+    public static void deliver(AlgoliaRequest request, Collection<BulkReindexRequestConsumer> consumers,
+                               Collection<RecordDeliveryListener> listeners) {
+        if (consumers.isEmpty()) {
+            return;
+        }
+        for (BulkReindexRequestConsumer consumer : consumers) {
+            consumer.accept(request);
+        }
+        for (RecordDeliveryListener listener : listeners) {
+            try {
+                listener.delivered(request);
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Record delivery listener: {} failed.", listener.getClass().getName(), ex);
+            }
+        }
+    }
+}
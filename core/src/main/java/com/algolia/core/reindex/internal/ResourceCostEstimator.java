@@ -0,0 +1,63 @@
+package com.algolia.core.reindex.internal;
+
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.wcm.api.NameConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+import static com.day.cq.commons.jcr.JcrConstants.JCR_CONTENT;
+
+/**
+ * Estimates the extender cost of a page or asset from its metadata, without reading any binary.
+ * <p>
+ * Pages are cheap. Assets are classified by the {@code dam:size} and, for PDFs, the {@code xmpTPg:NPages} recorded
+ * in their metadata by the DAM update asset workflow. PDFs are never cheap as their text is extracted.
+ *
+ * @since 3.6.0
+ */
+final class ResourceCostEstimator {
+
+    static final String PN_PAGE_COUNT = "xmpTPg:NPages";
+
+    private static final String METADATA = JCR_CONTENT + "/" + DamConstants.METADATA_FOLDER;
+
+    private static final String MIME_TYPE_PDF = "application/pdf";
+
+    private final long mediumAssetSize;
+
+    private final long largeAssetSize;
+
+    private final long largePageCount;
+
+    /**
+     * @param mediumAssetSize asset size in bytes from which an asset is at least medium
+     * @param largeAssetSize  asset size in bytes from which an asset is large
+     * @param largePageCount  page count from which a PDF is large
+     */
+    ResourceCostEstimator(long mediumAssetSize, long largeAssetSize, long largePageCount) {
+        this.mediumAssetSize = mediumAssetSize;
+        this.largeAssetSize = largeAssetSize;
+        this.largePageCount = largePageCount;
+    }
+
+    PriorityLaneScheduler.Lane estimate(Resource resource) {
+        if (resource.isResourceType(NameConstants.NT_PAGE)) {
+            return PriorityLaneScheduler.Lane.SMALL;
+        }
+        Resource metadata = resource.getChild(METADATA);
+        if (metadata == null) {
+            return PriorityLaneScheduler.Lane.SMALL;
+        }
+        ValueMap properties = metadata.getValueMap();
+        long size = properties.get(DamConstants.DAM_SIZE, 0L);
+        boolean pdf = StringUtils.equals(properties.get(DamConstants.DC_FORMAT, String.class), MIME_TYPE_PDF);
+        if (size >= this.largeAssetSize || pdf && properties.get(PN_PAGE_COUNT, 0L) >= this.largePageCount) {
+            return PriorityLaneScheduler.Lane.LARGE;
+        }
+        if (pdf || size >= this.mediumAssetSize) {
+            return PriorityLaneScheduler.Lane.MEDIUM;
+        }
+        return PriorityLaneScheduler.Lane.SMALL;
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Bulk reindexing of page and asset trees through the registered Algolia request extenders.
+ */
+@Version("1.0.0")
+package com.algolia.core.reindex;
+
+import org.osgi.annotation.versioning.Version;
@@ -0,0 +1,90 @@
+package com.algolia.core.extender.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test cases for {@link AppendOnlyJournal}
+ */
+class AppendOnlyJournalTest {
+
+    @TempDir
+    File dataDirectory;
+
+    @Test
+    void testAppendedLinesAreReplayedInOrder() {
+        File file = new File(this.dataDirectory, "test.journal");
+        AppendOnlyJournal journal = new AppendOnlyJournal(file, "test journal");
+        journal.append("a");
+        journal.append("b");
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(new AppendOnlyJournal(file, "test journal").replay(replayed::add));
+
+        assertEquals(Arrays.asList("a", "b"), replayed);
+        journal.close();
+    }
+
+    @Test
+    void testCompactionReplacesTheLinesAndAppendsContinue() throws IOException {
+        File file = new File(this.dataDirectory, "test.journal");
+        AppendOnlyJournal journal = new AppendOnlyJournal(file, "test journal");
+        journal.append("a");
+        journal.append("b");
+
+        journal.compact(Stream.of("b"));
+        journal.append("c");
+
+        assertEquals(Arrays.asList("b", "c"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        assertFalse(new File(this.dataDirectory, "test.journal.tmp").exists());
+        journal.close();
+    }
+
+    @Test
+    void testAppendsAfterCloseAreDropped() throws IOException {
+        File file = new File(this.dataDirectory, "test.journal");
+        AppendOnlyJournal journal = new AppendOnlyJournal(file, "test journal");
+        journal.append("a");
+        journal.close();
+        journal.append("b");
+
+        assertEquals(Collections.singletonList("a"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testUnreadableLineFailsTheReplay() {
+        File file = new File(this.dataDirectory, "test.journal");
+        AppendOnlyJournal journal = new AppendOnlyJournal(file, "test journal");
+        journal.append("a");
+        journal.close();
+
+        assertFalse(new AppendOnlyJournal(file, "test journal").replay(line -> {
+            throw new IllegalArgumentException("Invalid line: " + line);
+        }));
+    }
+
+    @Test
+    void testJournalWithoutFileKeepsNothing() {
+        AppendOnlyJournal journal = new AppendOnlyJournal(null, "test journal");
+        journal.append("a");
+        journal.compact(Stream.of("a"));
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(journal.replay(replayed::add));
+        assertEquals(Collections.emptyList(), replayed);
+    }
+}
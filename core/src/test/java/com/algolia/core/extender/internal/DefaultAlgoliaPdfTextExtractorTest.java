@@ -6,15 +6,26 @@ import com.algolia.connector.core.domain.AlgoliaRecord;
 import com.algolia.connector.core.domain.AlgoliaRequest;
 import com.algolia.connector.core.util.AlgoliaUtil;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.replication.ReplicationAction;
+import com.day.cq.replication.ReplicationActionType;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import jdk.jfr.consumer.RecordedEvent;
+import junitx.util.PrivateAccessor;
+import org.apache.sling.commons.metrics.MetricsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.BundleContext;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -24,14 +35,20 @@ import static com.algolia.core.extender.internal.DefaultAlgoliaPdfTextExtractor.
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -54,7 +71,7 @@ class DefaultAlgoliaPdfTextExtractorTest {
     @Mock
     private Asset asset;
 
-    private DefaultAlgoliaPdfTextExtractor.Config config;
+    private TestConfig config;
 
     @Mock
     private ResourceResolverFactory resolverFactory;
@@ -62,31 +79,28 @@ class DefaultAlgoliaPdfTextExtractorTest {
     @Mock
     private Resource resource;
 
+    @Mock
+    private BundleContext bundleContext;
+
+    @TempDir
+    File dataDirectory;
+
     private AlgoliaRequest request;
     private AlgoliaRecord algoliaRecord;
     private DefaultAlgoliaPdfTextExtractor algoliaPdfTextExtractor;
 
     @BeforeEach
     void setup() {
-        // Create a simple test implementation of Config
-        this.config = new DefaultAlgoliaPdfTextExtractor.Config() {
-            @Override
-            public int word_size_limit() {
-                return ALGOLIA_WORDS_LIMIT;
-            }
-
-            @Override
-            public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                return DefaultAlgoliaPdfTextExtractor.Config.class;
-            }
-        };
+        this.config = new TestConfig();
         this.algoliaPdfTextExtractor = new DefaultAlgoliaPdfTextExtractor(
-                this.resolverFactory, this.pdfTextExtractor, this.config);
+                this.resolverFactory, this.pdfTextExtractor, MetricsService.NOOP, this.bundleContext, this.config);
         this.algoliaRecord = new AlgoliaRecord(OBJECT_ID);
         // AlgoliaConfiguration is not used by the extractors, so we can pass null
         this.request = new AlgoliaRequest(this.resource, null);
         this.request.addRecord(this.algoliaRecord);
         lenient().when(this.asset.getPath()).thenReturn(ASSET_PATH);
+        lenient().when(this.bundleContext.getDataFile(anyString()))
+                .thenAnswer(invocation -> new File(this.dataDirectory, invocation.getArgument(0)));
     }
 
     @Test
@@ -361,19 +375,10 @@ class DefaultAlgoliaPdfTextExtractorTest {
     @Test
     void testConfigurationWithCustomWordLimit() {
         int customLimit = 500;
-        DefaultAlgoliaPdfTextExtractor.Config customConfig = new DefaultAlgoliaPdfTextExtractor.Config() {
-            @Override
-            public int word_size_limit() {
-                return customLimit;
-            }
-
-            @Override
-            public Class<? extends java.lang.annotation.Annotation> annotationType() {
-                return DefaultAlgoliaPdfTextExtractor.Config.class;
-            }
-        };
+        TestConfig customConfig = new TestConfig();
+        customConfig.wordSizeLimit = customLimit;
         DefaultAlgoliaPdfTextExtractor customExtractor = new DefaultAlgoliaPdfTextExtractor(
-                this.resolverFactory, this.pdfTextExtractor, customConfig);
+                this.resolverFactory, this.pdfTextExtractor, MetricsService.NOOP, this.bundleContext, customConfig);
 
         // Create text with 501 words (exceeds custom limit)
         StringBuilder textBuilder = new StringBuilder();
@@ -390,4 +395,594 @@ class DefaultAlgoliaPdfTextExtractorTest {
         assertTrue(this.algoliaRecord.containsKey("pdfText1"));
         assertTrue(this.algoliaRecord.containsKey("pdfText2"));
     }
+
+    @Test
+    void testParallelProcessingProducesSameChunksAsSequential() throws NoSuchFieldException {
+        StringBuilder textBuilder = new StringBuilder();
+        for (int i = 0; i < 60000; i++) {
+            textBuilder.append("word").append(i).append(i % 17 == 0 ? "\n" : " ");
+        }
+        String text = textBuilder.toString();
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(text);
+        TestConfig parallelConfig = new TestConfig();
+        parallelConfig.parallelism = 4;
+        parallelConfig.parallelThreshold = 1;
+        DefaultAlgoliaPdfTextExtractor parallelExtractor = new DefaultAlgoliaPdfTextExtractor(
+                this.resolverFactory, this.pdfTextExtractor, MetricsService.NOOP, this.bundleContext, parallelConfig);
+        AlgoliaRequest parallelRequest = new AlgoliaRequest(this.resource, null);
+        parallelRequest.addRecord(new AlgoliaRecord(OBJECT_ID));
+
+        try (MockedStatic<AlgoliaUtil> ignored = mockStatic(AlgoliaUtil.class)) {
+            this.algoliaPdfTextExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            parallelExtractor.augmentAlgoliaRequest(parallelRequest, this.asset);
+            // both the tokenization and the partition ran on the pool
+            assertEquals(2, ((PdfTextChunker) chunker(parallelExtractor)).getParallelInvocations());
+            assertEquals(0, ((PdfTextChunker) chunker(this.algoliaPdfTextExtractor)).getParallelInvocations());
+        } finally {
+            parallelExtractor.deactivate();
+        }
+
+        List<AlgoliaRecord> sequentialRecords = this.request.getAlgoliaRecords();
+        List<AlgoliaRecord> parallelRecords = parallelRequest.getAlgoliaRecords();
+        assertEquals(67, sequentialRecords.size());
+        assertEquals(sequentialRecords, parallelRecords);
+    }
+
+    @Test
+    void testNegativeCacheSkipsExtractionOfBinaryWithoutText() {
+        this.config.negativeCacheEnabled = true;
+        DefaultAlgoliaPdfTextExtractor cachingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("");
+
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+        assertFalse(this.algoliaRecord.containsKey("pdfText"));
+    }
+
+    @Test
+    void testNegativeCacheSkipsExtractionOfFailedBinary() {
+        this.config.negativeCacheEnabled = true;
+        DefaultAlgoliaPdfTextExtractor cachingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenThrow(new IllegalStateException("corrupt"));
+
+        assertThrows(IllegalStateException.class,
+                () -> cachingExtractor.augmentAlgoliaRequest(this.request, this.asset));
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+        verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+    }
+
+    @Test
+    void testNegativeCacheDoesNotCacheBinaryWithText() {
+        this.config.negativeCacheEnabled = true;
+        DefaultAlgoliaPdfTextExtractor cachingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("Some text");
+
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+        verify(this.pdfTextExtractor, times(2)).extractText(this.asset);
+    }
+
+    @Test
+    void testFingerprintReplaysAttributesOfUnchangedBinary() {
+        this.config.fingerprintEnabled = true;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("Some text");
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+        AlgoliaRecord replayedRecord = new AlgoliaRecord(OBJECT_ID);
+        AlgoliaRequest replayedRequest = new AlgoliaRequest(this.resource, null);
+        replayedRequest.addRecord(replayedRecord);
+        this.newExtractor(this.config).augmentAlgoliaRequest(replayedRequest, this.asset);
+
+        verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+        assertEquals("Some text", replayedRecord.get("pdfText"));
+    }
+
+    @Test
+    void testFingerprintLeavesBinaryWithoutTextToNegativeCache() {
+        this.config.fingerprintEnabled = true;
+        this.config.negativeCacheEnabled = true;
+        this.config.negativeCacheNoTextTtl = 0;
+        DefaultAlgoliaPdfTextExtractor cachingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("");
+
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+        cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+        verify(this.pdfTextExtractor, times(2)).extractText(this.asset);
+    }
+
+    @Test
+    void testFingerprintExtractsChangedBinaryOrConfiguration() {
+        this.config.fingerprintEnabled = true;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee", "da39a3ee", "5ba93c9d");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("Some text");
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+        this.config.wordSizeLimit = 1;
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        verify(this.pdfTextExtractor, times(3)).extractText(this.asset);
+    }
+
+    @Test
+    void testExtractionIsRecordedAsFlightRecorderEvent() throws IOException {
+        this.config.eventThreshold = 0;
+        this.config.wordSizeLimit = 10;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(words(21));
+
+        List<RecordedEvent> events = ExtenderExecutionTest.record(this.dataDirectory,
+                () -> this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset));
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(ASSET_PATH, event.getString("path"));
+        assertEquals(MIME_TYPE_PDF, event.getString("mimeType"));
+        assertEquals(words(21).length(), event.getLong("extractedChars"));
+        assertEquals(3, event.getInt("chunks"));
+        assertFalse(event.getBoolean("split"));
+        assertEquals(ExtenderExecution.CACHE_DISABLED, event.getString("cacheOutcome"));
+    }
+
+    @Test
+    void testModifiedAppliesNewConfigurationInPlace() {
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(words(21));
+
+        this.config.wordSizeLimit = 10;
+        this.algoliaPdfTextExtractor.modified(this.config);
+        this.algoliaPdfTextExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals("word20", this.algoliaRecord.get("pdfText3"));
+    }
+
+    @Test
+    void testModifiedKeepsWarmStateNotAffectedByTheChange() throws NoSuchFieldException {
+        this.config.negativeCacheEnabled = true;
+        this.config.parallelism = 2;
+        DefaultAlgoliaPdfTextExtractor cachingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("");
+        try {
+            cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            Object chunker = chunker(cachingExtractor);
+            // the in-memory cache is used, not the journal
+            assertTrue(new File(this.dataDirectory, "pdf-text-negative-cache.journal").delete());
+
+            this.config.wordSizeLimit = 10;
+            this.config.parallelThreshold = 64 * 1024;
+            this.config.negativeCacheFailedTtl = 12;
+            cachingExtractor.modified(this.config);
+            cachingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+            verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+            assertSame(chunker, chunker(cachingExtractor));
+
+            this.config.scriptAwareTokenization = false;
+            cachingExtractor.modified(this.config);
+
+            assertNotSame(chunker, chunker(cachingExtractor));
+        } finally {
+            cachingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testStoredTextIsLaidOutAgainWithoutExtracting() {
+        this.config.segmentStoreEnabled = true;
+        this.config.wordSizeLimit = 10;
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(words(21));
+        try {
+            storingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            this.config.wordSizeLimit = 7;
+            storingExtractor.modified(this.config);
+            AlgoliaRecord reindexedRecord = new AlgoliaRecord(OBJECT_ID);
+            AlgoliaRequest reindexedRequest = new AlgoliaRequest(this.resource, null);
+            reindexedRequest.addRecord(reindexedRecord);
+
+            storingExtractor.augmentAlgoliaRequest(reindexedRequest, this.asset);
+
+            verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+            assertEquals("word0 word1 word2 word3 word4 word5 word6", reindexedRecord.get("pdfText1"));
+            assertEquals("word14 word15 word16 word17 word18 word19 word20", reindexedRecord.get("pdfText3"));
+        } finally {
+            storingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testFingerprintHitStoresTextMissingFromSegmentStore() {
+        this.config.fingerprintEnabled = true;
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("Some text");
+        try {
+            storingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            this.config.segmentStoreEnabled = true;
+            storingExtractor.modified(this.config);
+
+            storingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            storingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+
+            verify(this.pdfTextExtractor, times(2)).extractText(this.asset);
+            assertTrue(storingExtractor.getSegmentStore().contains(ASSET_PATH, "da39a3ee"));
+        } finally {
+            storingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testStoredTextIsKeptExactly() {
+        this.config.segmentStoreEnabled = true;
+        this.config.wordSizeLimit = 2;
+        String text = "東京は日本の首都です。大阪は\n大きな都市です。";
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.asset.getMetadataValue(DamConstants.PN_SHA1)).thenReturn("da39a3ee");
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(text);
+        try {
+            storingExtractor.augmentAlgoliaRequest(this.request, this.asset);
+            this.config.wordSizeLimit = 900;
+            storingExtractor.modified(this.config);
+            AlgoliaRecord reindexedRecord = new AlgoliaRecord(OBJECT_ID);
+            AlgoliaRequest reindexedRequest = new AlgoliaRequest(this.resource, null);
+            reindexedRequest.addRecord(reindexedRecord);
+
+            storingExtractor.augmentAlgoliaRequest(reindexedRequest, this.asset);
+
+            verify(this.pdfTextExtractor, times(1)).extractText(this.asset);
+            assertEquals(text, reindexedRecord.get("pdfText"));
+        } finally {
+            storingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testRebuildLaysOutStoredTextsWithoutReadingTheRepository() {
+        this.config.segmentStoreEnabled = true;
+        this.config.wordSizeLimit = 10;
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        String otherPath = "/content/dam/test/other.pdf";
+        try {
+            PdfTextSegmentStore segments = storingExtractor.getSegmentStore();
+            segments.append(ASSET_PATH, "da39a3ee", words(21));
+            segments.append(otherPath, "5ba93c9d", "Some text");
+            List<AlgoliaRequest> rebuilt = new ArrayList<>();
+
+            assertEquals(2, storingExtractor.rebuild(rebuilt::add, () -> false));
+
+            assertEquals(2, rebuilt.size());
+            AlgoliaRecord record = rebuilt.get(0).getAlgoliaRecords().get(0);
+            assertNull(rebuilt.get(0).getResource());
+            assertEquals(ASSET_PATH, record.getObjectID());
+            assertEquals(ASSET_PATH, record.get(ATTRIBUTE_PATH));
+            assertEquals("word0 word1 word2 word3 word4 word5 word6 word7 word8 word9", record.get("pdfText1"));
+            assertEquals("word20", record.get("pdfText3"));
+            assertEquals("Some text", rebuilt.get(1).getAlgoliaRecords().get(0).get("pdfText"));
+            verifyNoInteractions(this.pdfTextExtractor);
+            assertEquals(0, storingExtractor.rebuild(rebuilt::add, () -> true));
+        } finally {
+            storingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testRebuildFailsWhenSegmentStoreIsDisabled() {
+        assertFalse(this.algoliaPdfTextExtractor.isEnabled());
+        assertEquals(0, this.algoliaPdfTextExtractor.getEntries());
+        assertThrows(IllegalStateException.class,
+                () -> this.algoliaPdfTextExtractor.rebuild(request -> { }, () -> false));
+        assertThrows(IllegalStateException.class, this.algoliaPdfTextExtractor::compact);
+    }
+
+    @Test
+    void testDeactivatedAssetsAreRemovedFromSegmentStore() {
+        this.config.segmentStoreEnabled = true;
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        try {
+            PdfTextSegmentStore segments = storingExtractor.getSegmentStore();
+            segments.append(ASSET_PATH, "da39a3ee", "text");
+
+            storingExtractor.handleEvent(new ReplicationAction(ReplicationActionType.ACTIVATE, ASSET_PATH).toEvent());
+            assertEquals(1, segments.size());
+            storingExtractor.handleEvent(
+                    new ReplicationAction(ReplicationActionType.DEACTIVATE, ASSET_PATH).toEvent());
+
+            assertEquals(0, segments.size());
+        } finally {
+            storingExtractor.deactivate();
+        }
+    }
+
+    @Test
+    void testModifiedKeepsSegmentStore() {
+        this.config.segmentStoreEnabled = true;
+        DefaultAlgoliaPdfTextExtractor storingExtractor = this.newExtractor(this.config);
+        PdfTextSegmentStore segments = storingExtractor.getSegmentStore();
+
+        this.config.segmentSize = 1;
+        storingExtractor.modified(this.config);
+        assertSame(segments, storingExtractor.getSegmentStore());
+
+        this.config.segmentStoreEnabled = false;
+        storingExtractor.modified(this.config);
+        assertNull(storingExtractor.getSegmentStore());
+    }
+
+    @Test
+    void testArrayAttributeModeAddsSingleOrderedAttribute() {
+        this.config.attributeMode = DefaultAlgoliaPdfTextExtractor.AttributeMode.ARRAY;
+        this.config.wordSizeLimit = 10;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(words(21));
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        List<?> chunks = (List<?>) this.algoliaRecord.get("pdfText");
+        assertEquals(3, chunks.size());
+        assertEquals("word0 word1 word2 word3 word4 word5 word6 word7 word8 word9", chunks.get(0));
+        assertEquals("word20", chunks.get(2));
+        assertFalse(this.algoliaRecord.containsKey("pdfText1"));
+        assertEquals(2, this.algoliaRecord.size()); // objectID + pdfText
+    }
+
+    @Test
+    void testArrayAttributeModeMigrationAlsoAddsNumberedAttributes() {
+        this.config.attributeMode = DefaultAlgoliaPdfTextExtractor.AttributeMode.ARRAY;
+        this.config.wordSizeLimit = 10;
+        this.config.attributeModeMigration = true;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(words(21));
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        List<?> chunks = (List<?>) this.algoliaRecord.get("pdfText");
+        assertEquals(chunks.get(0), this.algoliaRecord.get("pdfText1"));
+        assertEquals(chunks.get(2), this.algoliaRecord.get("pdfText3"));
+    }
+
+    @Test
+    void testSummaryReplacesFullTextOfLargePdf() {
+        this.config.summaryEnabled = true;
+        this.config.summarySize = 3;
+        StringBuilder textBuilder = new StringBuilder();
+        while (textBuilder.length() < RECORD_SIZE_LIMIT * 2) {
+            textBuilder.append("The torque wrench is calibrated. Torque wrench settings for the engine. ");
+        }
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(textBuilder.toString());
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals(List.of("torque wrench", "torque", "wrench"), this.algoliaRecord.get("pdfSummary"));
+        assertFalse(this.algoliaRecord.containsKey("pdfText"));
+        assertFalse(this.algoliaRecord.containsKey("pdfText1"));
+        assertEquals(1, this.request.getAlgoliaRecords().size());
+        assertFalse(this.request.isPdfTextSplittingAttempted());
+    }
+
+    @Test
+    void testSummaryOfTextWithoutSpacesCountsIdeographsAndBigrams() {
+        this.config.summaryEnabled = true;
+        this.config.summarySize = 3;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset))
+                .thenReturn("東京都の地図と京都の観光案内。東京の地図。 東京タワー");
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals(List.of("東京", "京", "京都"), this.algoliaRecord.get("pdfSummary"));
+        assertFalse(this.algoliaRecord.containsKey("pdfText"));
+    }
+
+    @Test
+    void testSummaryFallsBackToFullTextWithoutKeyphrases() {
+        this.config.summaryEnabled = true;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("12 34 56 - 78");
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals("12 34 56 - 78", this.algoliaRecord.get("pdfText"));
+        assertFalse(this.algoliaRecord.containsKey("pdfSummary"));
+    }
+
+    @Test
+    void testSummaryKeepsFullTextForMatchingPaths() {
+        this.config.summaryEnabled = true;
+        this.config.summaryFullTextPaths = new String[]{"/content/dam/test/.*"};
+        String smallText = "This is a small text from PDF.";
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(smallText);
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals(smallText, this.algoliaRecord.get("pdfText"));
+        assertFalse(this.algoliaRecord.containsKey("pdfSummary"));
+    }
+
+    @Test
+    void testWordSizeLimitAppliesToTextWithoutSpaces() {
+        this.config.wordSizeLimit = 10;
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn("東京都の地図と京都の観光案内。 English text");
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals("東京都の地図と京都の", this.algoliaRecord.get("pdfText1"));
+        assertEquals("観光案内。 English text", this.algoliaRecord.get("pdfText2"));
+    }
+
+    @Test
+    void testWordSizeLimitIgnoresTextWithoutSpacesWhenScriptAwareTokenizationIsDisabled() {
+        this.config.wordSizeLimit = 10;
+        this.config.scriptAwareTokenization = false;
+        String text = "東京都の地図と京都の観光案内。 English text";
+        when(this.asset.getMimeType()).thenReturn(MIME_TYPE_PDF);
+        when(this.pdfTextExtractor.extractText(this.asset)).thenReturn(text);
+
+        this.newExtractor(this.config).augmentAlgoliaRequest(this.request, this.asset);
+
+        assertEquals(text, this.algoliaRecord.get("pdfText"));
+    }
+
+    private static String words(int count) {
+        StringBuilder textBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            textBuilder.append("word").append(i).append(" ");
+        }
+        return textBuilder.toString().trim();
+    }
+
+    private static Object chunker(DefaultAlgoliaPdfTextExtractor extractor) throws NoSuchFieldException {
+        return PrivateAccessor.getField(PrivateAccessor.getField(extractor, "settings"), "chunker");
+    }
+
+    private DefaultAlgoliaPdfTextExtractor newExtractor(TestConfig config) {
+        return new DefaultAlgoliaPdfTextExtractor(
+                this.resolverFactory, this.pdfTextExtractor, MetricsService.NOOP, this.bundleContext, config);
+    }
+
+    /**
+     * Mutable {@link DefaultAlgoliaPdfTextExtractor.Config} initialized with the OSGi defaults.
+     */
+    static class TestConfig implements DefaultAlgoliaPdfTextExtractor.Config {
+
+        int wordSizeLimit = ALGOLIA_WORDS_LIMIT;
+        boolean scriptAwareTokenization = true;
+        DefaultAlgoliaPdfTextExtractor.AttributeMode attributeMode = DefaultAlgoliaPdfTextExtractor.AttributeMode.NUMBERED;
+        boolean attributeModeMigration;
+        boolean summaryEnabled;
+        int summarySize = 50;
+        int summaryMaxLength = 2048;
+        String[] summaryFullTextPaths = {};
+        int parallelism;
+        int parallelThreshold = 512 * 1024;
+        boolean negativeCacheEnabled;
+        int negativeCacheNoTextTtl = 168;
+        int negativeCacheFailedTtl = 24;
+        boolean fingerprintEnabled;
+        long fingerprintMaxSize = 64;
+        long eventThreshold = 10;
+        boolean segmentStoreEnabled;
+        long segmentSize = 64;
+
+        @Override
+        public int word_size_limit() {
+            return this.wordSizeLimit;
+        }
+
+        @Override
+        public boolean script_aware_tokenization() {
+            return this.scriptAwareTokenization;
+        }
+
+        @Override
+        public DefaultAlgoliaPdfTextExtractor.AttributeMode attribute_mode() {
+            return this.attributeMode;
+        }
+
+        @Override
+        public boolean attribute_mode_migration() {
+            return this.attributeModeMigration;
+        }
+
+        @Override
+        public boolean summary_enabled() {
+            return this.summaryEnabled;
+        }
+
+        @Override
+        public int summary_size() {
+            return this.summarySize;
+        }
+
+        @Override
+        public int summary_max_length() {
+            return this.summaryMaxLength;
+        }
+
+        @Override
+        public String[] summary_full_text_paths() {
+            return this.summaryFullTextPaths;
+        }
+
+        @Override
+        public int parallel_processing_parallelism() {
+            return this.parallelism;
+        }
+
+        @Override
+        public int parallel_processing_threshold() {
+            return this.parallelThreshold;
+        }
+
+        @Override
+        public boolean negative_cache_enabled() {
+            return this.negativeCacheEnabled;
+        }
+
+        @Override
+        public int negative_cache_no_text_ttl() {
+            return this.negativeCacheNoTextTtl;
+        }
+
+        @Override
+        public int negative_cache_failed_ttl() {
+            return this.negativeCacheFailedTtl;
+        }
+
+        @Override
+        public boolean fingerprint_enabled() {
+            return this.fingerprintEnabled;
+        }
+
+        @Override
+        public long fingerprint_max_size() {
+            return this.fingerprintMaxSize;
+        }
+
+        @Override
+        public long event_threshold() {
+            return this.eventThreshold;
+        }
+
+        @Override
+        public boolean segment_store_enabled() {
+            return this.segmentStoreEnabled;
+        }
+
+        @Override
+        public long segment_size() {
+            return this.segmentSize;
+        }
+
+        @Override
+        public Class<? extends java.lang.annotation.Annotation> annotationType() {
+            return DefaultAlgoliaPdfTextExtractor.Config.class;
+        }
+    }
 }
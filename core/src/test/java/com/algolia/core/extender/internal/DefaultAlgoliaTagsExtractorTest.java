@@ -4,20 +4,36 @@ import com.algolia.connector.core.TagsParserService;
 import com.algolia.connector.core.domain.AlgoliaRecord;
 import com.algolia.connector.core.domain.AlgoliaRequest;
 import com.day.cq.dam.api.Asset;
+import com.day.cq.tagging.Tag;
+import com.day.cq.tagging.TagManager;
 import com.day.cq.wcm.api.Page;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.metrics.MetricsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.BundleContext;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.Locale;
 
 import static com.day.cq.tagging.TagConstants.PN_TAGS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +60,24 @@ class DefaultAlgoliaTagsExtractorTest {
     @Mock
     private Resource resource;
 
+    @Mock
+    private ValueMap valueMap;
+
+    @Mock
+    private ResourceResolver resolver;
+
+    @Mock
+    private TagManager tagManager;
+
+    @Mock
+    private Tag tag;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @TempDir
+    File dataDirectory;
+
     private AlgoliaRequest assetRequest;
     private AlgoliaRequest pageRequest;
     private AlgoliaRecord algoliaAssetRecord;
@@ -52,7 +86,7 @@ class DefaultAlgoliaTagsExtractorTest {
 
     @BeforeEach
     void setup() {
-        this.algoliaTagsExtractor = new DefaultAlgoliaTagsExtractor(this.tagsParserService);
+        this.algoliaTagsExtractor = this.newExtractor(false, "1");
         this.algoliaAssetRecord = new AlgoliaRecord(ASSET_PATH);
         // AlgoliaConfiguration is not used by the extractors, so we can pass null
         this.assetRequest = new AlgoliaRequest(this.resource, null);
@@ -182,4 +216,114 @@ class DefaultAlgoliaTagsExtractorTest {
         this.algoliaTagsExtractor.augmentAlgoliaRequest(this.pageRequest, this.page);
         verify(this.tagsParserService).parse(this.resource, this.algoliaPageRecord, PN_TAGS);
     }
+
+    @Test
+    void testFingerprintReplaysTagsOfUnchangedResource() {
+        this.mockTaggedResource();
+        when(this.valueMap.get(PN_TAGS, String[].class)).thenReturn(new String[]{"we-retail:activity/hiking"});
+
+        this.newExtractor(true, "1").augmentAlgoliaRequest(this.assetRequest, this.asset);
+        AlgoliaRecord replayedRecord = new AlgoliaRecord(ASSET_PATH);
+        AlgoliaRequest replayedRequest = new AlgoliaRequest(this.resource, null);
+        replayedRequest.addRecord(replayedRecord);
+        this.newExtractor(true, "1").augmentAlgoliaRequest(replayedRequest, this.asset);
+
+        verify(this.tagsParserService, times(1)).parse(eq(this.resource), any(AlgoliaRecord.class), eq(PN_TAGS));
+        assertEquals("Hiking", replayedRecord.get("tags"));
+    }
+
+    @Test
+    void testFingerprintParsesChangedTagsOrVersion() {
+        this.mockTaggedResource();
+        when(this.valueMap.get(PN_TAGS, String[].class)).thenReturn(
+                new String[]{"we-retail:activity/hiking"}, new String[]{"we-retail:activity/biking"});
+
+        this.newExtractor(true, "1").augmentAlgoliaRequest(this.assetRequest, this.asset);
+        this.newExtractor(true, "1").augmentAlgoliaRequest(this.assetRequest, this.asset);
+        this.newExtractor(true, "2").augmentAlgoliaRequest(this.assetRequest, this.asset);
+
+        verify(this.tagsParserService, times(3)).parse(this.resource, this.algoliaAssetRecord, PN_TAGS);
+    }
+
+    @Test
+    void testFingerprintParsesRenamedOrTranslatedTags() {
+        this.mockTaggedResource();
+        when(this.valueMap.get(PN_TAGS, String[].class)).thenReturn(new String[]{"we-retail:activity/hiking"});
+        DefaultAlgoliaTagsExtractor extractor = this.newExtractor(true, "1");
+
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+        when(this.tag.getTitlePath()).thenReturn("Activity / Trekking");
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+        when(this.tag.getLocalizedTitlePaths())
+                .thenReturn(Collections.singletonMap(Locale.GERMAN, "Aktivität / Trekking"));
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+
+        verify(this.tagsParserService, times(3)).parse(this.resource, this.algoliaAssetRecord, PN_TAGS);
+    }
+
+    @Test
+    void testModifiedVersionParsesTagsAgain() {
+        this.mockTaggedResource();
+        when(this.valueMap.get(PN_TAGS, String[].class)).thenReturn(new String[]{"we-retail:activity/hiking"});
+        DefaultAlgoliaTagsExtractor extractor = this.newExtractor(true, "1");
+
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+        extractor.modified(config(true, "2"));
+        extractor.augmentAlgoliaRequest(this.assetRequest, this.asset);
+
+        verify(this.tagsParserService, times(2)).parse(this.resource, this.algoliaAssetRecord, PN_TAGS);
+    }
+
+    private void mockTaggedResource() {
+        when(this.resource.getPath()).thenReturn(ASSET_PATH);
+        when(this.resource.getValueMap()).thenReturn(this.valueMap);
+        lenient().when(this.resource.getResourceResolver()).thenReturn(this.resolver);
+        lenient().when(this.resolver.adaptTo(TagManager.class)).thenReturn(this.tagManager);
+        lenient().when(this.tagManager.resolve(anyString())).thenReturn(this.tag);
+        lenient().when(this.tag.getTitlePath()).thenReturn("Activity / Hiking");
+        lenient().when(this.tag.getLocalizedTitlePaths())
+                .thenReturn(Collections.singletonMap(Locale.GERMAN, "Aktivität / Wandern"));
+        lenient().when(this.bundleContext.getDataFile(anyString()))
+                .thenAnswer(invocation -> new File(this.dataDirectory, invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            invocation.getArgument(1, AlgoliaRecord.class).addAttribute("tags", "Hiking");
+            return null;
+        }).when(this.tagsParserService).parse(eq(this.resource), any(AlgoliaRecord.class), eq(PN_TAGS));
+    }
+
+    private DefaultAlgoliaTagsExtractor newExtractor(boolean fingerprintEnabled, String fingerprintVersion) {
+        return new DefaultAlgoliaTagsExtractor(this.tagsParserService, MetricsService.NOOP, this.bundleContext,
+                config(fingerprintEnabled, fingerprintVersion));
+    }
+
+    private static DefaultAlgoliaTagsExtractor.Config config(boolean fingerprintEnabled, String fingerprintVersion) {
+        return new DefaultAlgoliaTagsExtractor.Config() {
+            @Override
+            public boolean fingerprint_enabled() {
+                return fingerprintEnabled;
+            }
+
+            @Override
+            public String fingerprint_version() {
+                return fingerprintVersion;
+            }
+
+            @Override
+            public long fingerprint_max_size() {
+                return 8;
+            }
+
+            @Override
+            public long event_threshold() {
+                return 10;
+            }
+
+            @Override
+            public Class<? extends java.lang.annotation.Annotation> annotationType() {
+                return DefaultAlgoliaTagsExtractor.Config.class;
+            }
+        };
+    }
 }
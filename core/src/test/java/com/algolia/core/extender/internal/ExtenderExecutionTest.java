@@ -0,0 +1,81 @@
+package com.algolia.core.extender.internal;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test cases for {@link ExtenderExecution}
+ */
+class ExtenderExecutionTest {
+
+    static final String EVENT_NAME = "com.algolia.extensions.ExtenderExecution";
+
+    @TempDir
+    File dataDirectory;
+
+    @Test
+    void testExecutionIsRecordedWithItsAttributes() throws IOException {
+        List<RecordedEvent> events = record(this.dataDirectory, () -> ExtenderExecution
+                .begin(String.class, "/content/dam/a.pdf", 0)
+                .mimeType("application/pdf")
+                .extractedChars(1024)
+                .chunks(3)
+                .split(true)
+                .cacheOutcome(ExtenderExecution.CACHE_MISS)
+                .end());
+
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(String.class.getName(), event.getString("extender"));
+        assertEquals("/content/dam/a.pdf", event.getString("path"));
+        assertEquals("application/pdf", event.getString("mimeType"));
+        assertEquals(1024, event.getLong("extractedChars"));
+        assertEquals(3, event.getInt("chunks"));
+        assertTrue(event.getBoolean("split"));
+        assertEquals(ExtenderExecution.CACHE_MISS, event.getString("cacheOutcome"));
+    }
+
+    @Test
+    void testExecutionsBelowThresholdAreNotRecorded() throws IOException {
+        List<RecordedEvent> events = record(this.dataDirectory,
+                () -> ExtenderExecution.begin(String.class, "/content/dam/a.pdf", 60_000).end());
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void testNothingIsAllocatedWithoutRecording() {
+        assertSame(ExtenderExecution.NOOP, ExtenderExecution.begin(String.class, "/content/dam/a.pdf", 0));
+        assertSame(ExtenderExecution.NOOP, ExtenderExecution.begin(String.class, "/content/dam/a.pdf", -1));
+    }
+
+    /**
+     * Runs the given code while recording extender executions and returns the recorded events.
+     */
+    static List<RecordedEvent> record(File directory, Runnable code) throws IOException {
+        Path dump = new File(directory, "extender-executions.jfr").toPath();
+        try (Recording recording = new Recording()) {
+            recording.enable(EVENT_NAME);
+            recording.start();
+            code.run();
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals(EVENT_NAME))
+                .collect(Collectors.toList());
+    }
+}
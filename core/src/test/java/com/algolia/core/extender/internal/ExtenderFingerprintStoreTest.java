@@ -0,0 +1,78 @@
+package com.algolia.core.extender.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test cases for {@link ExtenderFingerprintStore}
+ */
+class ExtenderFingerprintStoreTest {
+
+    private static final Map<String, Object> ATTRIBUTES = Collections.singletonMap("tags", "Hiking");
+
+    /**
+     * Serialized size of a fingerprint of {@link #ATTRIBUTES} with a single character path and digest.
+     */
+    private static final int ENTRY_SIZE = "{\"path\":\"a\",\"digest\":\"1\",\"attributes\":{\"tags\":\"Hiking\"}}"
+            .length();
+
+    @TempDir
+    File dataDirectory;
+
+    @Test
+    void testAttributesAreReplayedForUnchangedDigest() {
+        ExtenderFingerprintStore store = new ExtenderFingerprintStore(null, 1024);
+        store.record("a", "1", ATTRIBUTES);
+
+        assertEquals(ATTRIBUTES, store.replay("a", "1"));
+        assertNull(store.replay("a", "2"));
+        assertNull(store.replay("b", "1"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        ExtenderFingerprintStore store = new ExtenderFingerprintStore(null, 2L * ENTRY_SIZE);
+        store.record("a", "1", ATTRIBUTES);
+        store.record("b", "1", ATTRIBUTES);
+        store.replay("a", "1");
+        store.record("c", "1", ATTRIBUTES);
+
+        assertEquals(2, store.size());
+        assertNotNull(store.replay("a", "1"));
+        assertNull(store.replay("b", "1"));
+        assertNotNull(store.replay("c", "1"));
+
+        store.setMaxSize(ENTRY_SIZE);
+
+        assertEquals(1, store.size());
+        assertNotNull(store.replay("c", "1"));
+    }
+
+    @Test
+    void testJournalIsCompactedAndReplayedWithinMaxSize() throws IOException {
+        File journal = new File(this.dataDirectory, "fingerprints.journal");
+        ExtenderFingerprintStore store = new ExtenderFingerprintStore(journal, 2L * ENTRY_SIZE);
+        for (int i = 0; i < 10; i++) {
+            store.record("a", "1", ATTRIBUTES);
+            store.record("b", "1", ATTRIBUTES);
+        }
+        store.close();
+
+        assertTrue(Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8).size() <= 5);
+        ExtenderFingerprintStore reloaded = new ExtenderFingerprintStore(journal, ENTRY_SIZE);
+        assertEquals(1, reloaded.size());
+        assertNotNull(reloaded.replay("b", "1"));
+    }
+}
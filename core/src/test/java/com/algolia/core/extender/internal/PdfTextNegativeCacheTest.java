@@ -0,0 +1,83 @@
+package com.algolia.core.extender.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static com.algolia.core.extender.internal.PdfTextNegativeCache.Outcome.FAILED;
+import static com.algolia.core.extender.internal.PdfTextNegativeCache.Outcome.NO_TEXT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Test cases for {@link PdfTextNegativeCache}
+ */
+class PdfTextNegativeCacheTest {
+
+    private static final long NO_TEXT_TTL = TimeUnit.HOURS.toMillis(168);
+    private static final long FAILED_TTL = TimeUnit.HOURS.toMillis(24);
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    File dataDirectory;
+
+    @Test
+    void testOutcomesAreCachedUntilTheirTtl() {
+        PdfTextNegativeCache cache = new PdfTextNegativeCache(null, NO_TEXT_TTL, FAILED_TTL, clockAt(NOW));
+        cache.put("a", NO_TEXT);
+        cache.put("b", FAILED);
+
+        assertEquals(NO_TEXT, cache.get("a"));
+        assertEquals(FAILED, cache.get("b"));
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    void testJournalIsReplayedAndExpiredEntriesAreDropped() {
+        File journal = new File(this.dataDirectory, "negative-cache.journal");
+        PdfTextNegativeCache cache = new PdfTextNegativeCache(journal, NO_TEXT_TTL, FAILED_TTL, clockAt(NOW));
+        cache.put("a", NO_TEXT);
+        cache.put("b", FAILED);
+
+        Instant twoDaysLater = NOW.plusMillis(TimeUnit.DAYS.toMillis(2));
+        PdfTextNegativeCache reloaded = new PdfTextNegativeCache(journal, NO_TEXT_TTL, FAILED_TTL,
+                clockAt(twoDaysLater));
+
+        assertEquals(1, reloaded.size());
+        assertEquals(NO_TEXT, reloaded.get("a"));
+        assertNull(reloaded.get("b"));
+    }
+
+    @Test
+    void testZeroTtlDisablesCachingOfOutcome() {
+        PdfTextNegativeCache cache = new PdfTextNegativeCache(null, NO_TEXT_TTL, 0, clockAt(NOW));
+        cache.put("b", FAILED);
+
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    void testNewTtlsApplyToCachedEntries() {
+        File journal = new File(this.dataDirectory, "negative-cache.journal");
+        PdfTextNegativeCache cache = new PdfTextNegativeCache(journal, NO_TEXT_TTL, FAILED_TTL, clockAt(NOW));
+        cache.put("a", NO_TEXT);
+        cache.put("b", FAILED);
+        cache.close();
+        PdfTextNegativeCache reloaded = new PdfTextNegativeCache(journal, NO_TEXT_TTL, FAILED_TTL,
+                clockAt(NOW.plusMillis(TimeUnit.HOURS.toMillis(12))));
+
+        reloaded.setTtls(NO_TEXT_TTL, TimeUnit.HOURS.toMillis(6));
+
+        assertEquals(NO_TEXT, reloaded.get("a"));
+        assertNull(reloaded.get("b"));
+    }
+
+    private static Clock clockAt(Instant instant) {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+}
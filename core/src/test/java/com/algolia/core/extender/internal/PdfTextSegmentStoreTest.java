@@ -0,0 +1,182 @@
+package com.algolia.core.extender.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test cases for {@link PdfTextSegmentStore}
+ */
+class PdfTextSegmentStoreTest {
+
+    private static final String PATH = "/content/dam/test/document.pdf";
+
+    private static final long SEGMENT_SIZE = 1024 * 1024;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testGetReturnsTextOfMatchingBinary() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append(PATH, "da39a3ee", "hello wörld");
+
+        PdfTextSegmentStore.Entry entry = store.get(PATH, "da39a3ee");
+
+        assertEquals(PATH, entry.path);
+        assertEquals("hello wörld", entry.text);
+        assertEquals("hello wörld", store.get(PATH).text);
+        assertNull(store.get(PATH, "5ba93c9d"));
+        assertNull(store.get("/content/dam/test/other.pdf", "da39a3ee"));
+        assertNull(store.get("/content/dam/test/other.pdf"));
+        store.close();
+    }
+
+    @Test
+    void testTextIsStoredExactly() throws IOException {
+        String text = "  東京は日本の首都です。\nภาษาไทยไม่มีช่องว่าง\t end  ";
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append(PATH, "da39a3ee", text);
+        store.close();
+
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+
+        assertEquals(text, reopened.get(PATH, "da39a3ee").text);
+        reopened.close();
+    }
+
+    @Test
+    void testAppendSupersedesPreviousEntryOfPath() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append(PATH, "da39a3ee", "old");
+        store.append(PATH, "5ba93c9d", "new");
+
+        assertEquals(1, store.size());
+        assertNull(store.get(PATH, "da39a3ee"));
+        assertEquals("new", store.get(PATH, "5ba93c9d").text);
+        assertTrue(store.garbageRatio() > 0.4);
+        store.close();
+    }
+
+    @Test
+    void testEntriesSurviveRestartAcrossSealedSegments() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, 32);
+        for (int i = 0; i < 5; i++) {
+            store.append("/content/dam/test/" + i + ".pdf", "hash" + i, "text" + i);
+        }
+        assertEquals(5, store.segmentCount());
+        store.close();
+
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, 32);
+
+        assertEquals(5, reopened.size());
+        assertEquals("text0", reopened.get("/content/dam/test/0.pdf", "hash0").text);
+        assertEquals("text4", reopened.get("/content/dam/test/4.pdf", "hash4").text);
+        reopened.close();
+    }
+
+    @Test
+    void testTornEntryIsTruncatedOnStartup() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append(PATH, "da39a3ee", "first");
+        store.append("/content/dam/test/other.pdf", "5ba93c9d", "second");
+        store.close();
+        File segment = new File(this.directory, "segment-0000000001.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        reopened.append("/content/dam/test/third.pdf", "2fd4e1c6", "third");
+
+        assertEquals(2, reopened.size());
+        assertEquals("first", reopened.get(PATH, "da39a3ee").text);
+        assertEquals("third", reopened.get("/content/dam/test/third.pdf", "2fd4e1c6").text);
+        reopened.close();
+    }
+
+    @Test
+    void testCompactDropsSupersededEntries() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, 64);
+        for (int i = 0; i < 4; i++) {
+            store.append(PATH, "hash" + i, "text" + i);
+        }
+        store.append("/content/dam/test/other.pdf", "5ba93c9d", "other");
+
+        store.compact();
+
+        assertEquals(0, store.garbageRatio());
+        assertEquals(2, store.size());
+        assertEquals("text3", store.get(PATH, "hash3").text);
+        store.append("/content/dam/test/third.pdf", "2fd4e1c6", "third");
+        store.close();
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, 64);
+        assertEquals(3, reopened.size());
+        assertEquals("other", reopened.get("/content/dam/test/other.pdf", "5ba93c9d").text);
+        assertEquals(reopened.segmentCount(), new File(this.directory, "").list().length);
+        reopened.close();
+    }
+
+    @Test
+    void testFailedCompactionLeavesStoreUnchanged() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append(PATH, "hash0", "old");
+        store.append(PATH, "hash1", "new");
+        // Occupies the name of the first compacted segment.
+        assertTrue(new File(this.directory, "segment-0000000002.seg.tmp").createNewFile());
+
+        assertThrows(IOException.class, store::compact);
+
+        assertEquals("new", store.get(PATH, "hash1").text);
+        store.append("/content/dam/test/other.pdf", "5ba93c9d", "other");
+        store.close();
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        assertEquals(2, reopened.size());
+        assertEquals("new", reopened.get(PATH, "hash1").text);
+        assertEquals(List.of("segment-0000000001.seg"), List.of(this.directory.list()));
+        reopened.close();
+    }
+
+    @Test
+    void testPathsListsLiveEntriesInAppendOrder() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, 64);
+        store.append("/content/dam/test/a.pdf", "hash", "a");
+        store.append("/content/dam/test/b.pdf", "hash", "b");
+        store.append("/content/dam/test/a.pdf", "hash2", "a2");
+
+        assertEquals(List.of("/content/dam/test/b.pdf", "/content/dam/test/a.pdf"), store.paths());
+        store.close();
+    }
+
+    @Test
+    void testRemoveForgetsPathAndPathsBelowAcrossRestarts() throws IOException {
+        PdfTextSegmentStore store = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        store.append("/content/dam/test/a.pdf", "hash", "a");
+        store.append("/content/dam/test/folder/b.pdf", "hash", "b");
+        store.append("/content/dam/test/folder2/c.pdf", "hash", "c");
+
+        store.remove("/content/dam/test/a.pdf");
+        store.remove("/content/dam/test/folder");
+
+        assertFalse(store.contains("/content/dam/test/a.pdf", "hash"));
+        assertEquals(List.of("/content/dam/test/folder2/c.pdf"), store.paths());
+        store.close();
+        PdfTextSegmentStore reopened = new PdfTextSegmentStore(this.directory, SEGMENT_SIZE);
+        assertEquals(List.of("/content/dam/test/folder2/c.pdf"), reopened.paths());
+        assertTrue(reopened.garbageRatio() > 0.5);
+        reopened.compact();
+        assertEquals(0, reopened.garbageRatio());
+        assertTrue(reopened.contains("/content/dam/test/folder2/c.pdf", "hash"));
+        reopened.close();
+    }
+}
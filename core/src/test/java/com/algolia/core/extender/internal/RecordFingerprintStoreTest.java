@@ -0,0 +1,154 @@
+package com.algolia.core.extender.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test cases for {@link RecordFingerprintStore}
+ */
+class RecordFingerprintStoreTest {
+
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(168);
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    File dataDirectory;
+
+    @Test
+    void testOnlyConfirmedDigestsAreUnchanged() {
+        RecordFingerprintStore store = new RecordFingerprintStore(null, MAX_AGE, clockAt(NOW));
+
+        assertFalse(store.isUnchanged("a", "1"));
+        store.confirm("a", null, "1");
+        assertTrue(store.isUnchanged("a", "1"));
+        assertFalse(store.isUnchanged("a", "2"));
+        assertFalse(store.isUnchanged("b", "1"));
+    }
+
+    @Test
+    void testJournalIsReplayedAndExpiredEntriesAreDropped() {
+        File journal = new File(this.dataDirectory, "record-fingerprints.journal");
+        RecordFingerprintStore store = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+        store.confirm("a", null, "1");
+        new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW.plusMillis(MAX_AGE / 2))).confirm("b", null, "1");
+
+        RecordFingerprintStore reloaded = new RecordFingerprintStore(journal, MAX_AGE,
+                clockAt(NOW.plusMillis(MAX_AGE)));
+
+        assertEquals(1, reloaded.size());
+        assertTrue(reloaded.isUnchanged("b", "1"));
+        assertFalse(reloaded.isUnchanged("a", "1"));
+    }
+
+    @Test
+    void testZeroMaxAgeNeverExpires() {
+        RecordFingerprintStore store = new RecordFingerprintStore(null, 0, clockAt(NOW));
+        store.confirm("a", null, "1");
+
+        assertTrue(store.isUnchanged("a", "1"));
+    }
+
+    @Test
+    void testNewMaxAgeAppliesToRecordedDigests() {
+        File journal = new File(this.dataDirectory, "record-fingerprints.journal");
+        new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW)).confirm("a", null, "1");
+        RecordFingerprintStore store = new RecordFingerprintStore(journal, MAX_AGE,
+                clockAt(NOW.plusMillis(MAX_AGE / 2)));
+
+        assertTrue(store.isUnchanged("a", "1"));
+        store.setMaxAge(MAX_AGE / 4);
+        assertFalse(store.isUnchanged("a", "1"));
+        store.setMaxAge(0);
+        assertTrue(store.isUnchanged("a", "1"));
+    }
+
+    @Test
+    void testRemovalCoversSplitRecordsAndIsJournaled() {
+        File journal = new File(this.dataDirectory, "record-fingerprints.journal");
+        RecordFingerprintStore store = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+        for (String objectID : new String[]{"doc", "doc_0", "doc_1", "doc_a", "doc2"}) {
+            store.confirm(objectID, null, "1");
+        }
+
+        store.remove("doc");
+
+        RecordFingerprintStore reloaded = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.isUnchanged("doc_a", "1"));
+        assertTrue(reloaded.isUnchanged("doc2", "1"));
+    }
+
+    @Test
+    void testRetainForgetsSplitRecordsBeyondTheCurrentSplits() {
+        RecordFingerprintStore store = new RecordFingerprintStore(null, MAX_AGE, clockAt(NOW));
+        for (String objectID : new String[]{"doc_0", "doc_1", "doc_2"}) {
+            store.confirm(objectID, null, "1");
+        }
+
+        store.retain("doc", Arrays.asList("doc_0", "doc_1"));
+
+        assertEquals(2, store.size());
+        assertFalse(store.isUnchanged("doc_2", "1"));
+    }
+
+    @Test
+    void testRemovePathForgetsTheRecordsBuiltFromAndBelowThePath() {
+        File journal = new File(this.dataDirectory, "record-fingerprints.journal");
+        RecordFingerprintStore store = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+        store.confirm("page", "/content/site/page", "1");
+        store.confirm("child_0", "/content/site/page/child", "1");
+        store.confirm("sibling", "/content/site/page2", "1");
+        store.confirm("unknown", null, "1");
+        RecordFingerprintStore reloaded = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+
+        reloaded.removePath("/content/site/page");
+
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.isUnchanged("sibling", "1"));
+        assertTrue(reloaded.isUnchanged("unknown", "1"));
+    }
+
+    @Test
+    void testInvalidateForgetsOnlyTheRecord() {
+        RecordFingerprintStore store = new RecordFingerprintStore(null, MAX_AGE, clockAt(NOW));
+        store.confirm("doc", "/content/dam/doc.pdf", "1");
+        store.confirm("doc_0", "/content/dam/doc.pdf", "1");
+
+        store.invalidate("doc");
+
+        assertFalse(store.isUnchanged("doc", "1"));
+        assertTrue(store.isUnchanged("doc_0", "1"));
+        store.removePath("/content/dam/doc.pdf");
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testJournalWithoutPathsIsReplayed() throws IOException {
+        File journal = new File(this.dataDirectory, "record-fingerprints.journal");
+        Files.write(journal.toPath(), Collections.singletonList("a\t1\t" + NOW.toEpochMilli()),
+                StandardCharsets.UTF_8);
+
+        RecordFingerprintStore store = new RecordFingerprintStore(journal, MAX_AGE, clockAt(NOW));
+
+        assertTrue(store.isUnchanged("a", "1"));
+    }
+
+    private static Clock clockAt(Instant instant) {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+}
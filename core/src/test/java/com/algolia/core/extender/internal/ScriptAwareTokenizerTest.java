@@ -0,0 +1,45 @@
+package com.algolia.core.extender.internal;
+
+import opennlp.tools.tokenize.WhitespaceTokenizer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Test cases for {@link ScriptAwareTokenizer}
+ */
+class ScriptAwareTokenizerTest {
+
+    private final ScriptAwareTokenizer tokenizer = ScriptAwareTokenizer.INSTANCE;
+
+    @Test
+    void testSpaceSeparatedTextIsTokenizedOnWhitespace() {
+        String text = "The quick, brown fox\njumps over\tthe lazy dog. Привет мир";
+
+        assertArrayEquals(WhitespaceTokenizer.INSTANCE.tokenizePos(text), this.tokenizer.tokenizePos(text));
+    }
+
+    @Test
+    void testJapaneseIdeographsAreSeparateTokensAndKanaRunsAreKept() {
+        assertArrayEquals(new String[]{"日", "本", "語", "の", "テキスト", "を", "分", "割", "します。"},
+                this.tokenizer.tokenize("日本語のテキストを分割します。"));
+    }
+
+    @Test
+    void testChineseIdeographsAreSeparateTokens() {
+        assertArrayEquals(new String[]{"北", "京", "大", "学，", "中", "文"},
+                this.tokenizer.tokenize("北京大学，中文"));
+    }
+
+    @Test
+    void testThaiIsSegmentedIntoWords() {
+        assertArrayEquals(new String[]{"ภาษา", "ไทย", "ไม่", "มี", "การ", "เว้น", "วรรค"},
+                this.tokenizer.tokenize("ภาษาไทยไม่มีการเว้นวรรค"));
+    }
+
+    @Test
+    void testMixedTokensKeepLeadingPunctuationAndLatinParts() {
+        assertArrayEquals(new String[]{"「PDF", "ファイル」", "test"},
+                this.tokenizer.tokenize("「PDFファイル」 test"));
+    }
+}
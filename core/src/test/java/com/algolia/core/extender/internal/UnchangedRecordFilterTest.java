@@ -0,0 +1,324 @@
+package com.algolia.core.extender.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRecord;
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.replication.ReplicationAction;
+import com.day.cq.replication.ReplicationActionType;
+import com.day.cq.wcm.api.Page;
+import jdk.jfr.consumer.RecordedEvent;
+import junitx.util.PrivateAccessor;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.BundleContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.algolia.connector.core.AlgoliaConstants.ATTRIBUTE_PATH;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for {@link UnchangedRecordFilter}
+ */
+@ExtendWith(MockitoExtension.class)
+class UnchangedRecordFilterTest {
+
+    private static final String PAGE_PATH = "/content/test/page";
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Page page;
+
+    @Mock
+    private Asset asset;
+
+    @Mock
+    private Resource resource;
+
+    @TempDir
+    File dataDirectory;
+
+    @BeforeEach
+    void setup() {
+        lenient().when(this.bundleContext.getDataFile(anyString()))
+                .thenAnswer(invocation -> new File(this.dataDirectory, invocation.getArgument(0)));
+    }
+
+    @Test
+    void testUnchangedRecordsAreDropped() {
+        deliver(this.newFilter(true, "1"), request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        this.newFilter(true, "1").augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(0, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testAttributeOrderDoesNotChangeTheDigest() {
+        AlgoliaRecord record = record(PAGE_PATH, "title", "Page");
+        record.addAttribute("tags", List.of("a", "b"));
+        AlgoliaRecord reordered = new AlgoliaRecord(PAGE_PATH);
+        reordered.addAttribute("tags", List.of("a", "b"));
+        reordered.addAttribute("title", "Page");
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+
+        deliver(filter, request(record), this.page);
+        AlgoliaRequest request = request(reordered);
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(0, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testOnlyChangedSplitRecordsAreKept() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record("doc_0", "pdfText", "one"), record("doc_1", "pdfText", "two"),
+                record("doc_2", "pdfText", "three")), this.asset);
+
+        AlgoliaRequest request = request(record("doc_0", "pdfText", "one"), record("doc_1", "pdfText", "2"),
+                record("doc_2", "pdfText", "three"), record("doc_3", "pdfText", "four"));
+        filter.augmentAlgoliaRequest(request, this.asset);
+
+        assertEquals(List.of("doc_1", "doc_3"), request.getAlgoliaRecords().stream()
+                .map(AlgoliaRecord::getObjectID)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRecordsNotReportedAsDeliveredAreSentAgain() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        filter.augmentAlgoliaRequest(request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testSplitRecordsBeyondTheCurrentSplitsAreSentAgain() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        when(this.resource.getPath()).thenReturn("doc");
+        deliver(filter, request(this.resource, record("doc_0", "pdfText", "one"), record("doc_1", "pdfText", "two"),
+                record("doc_2", "pdfText", "three")), this.asset);
+        deliver(filter, request(this.resource, record("doc_0", "pdfText", "one"),
+                record("doc_1", "pdfText", "two")), this.asset);
+
+        AlgoliaRequest request = request(this.resource, record("doc_0", "pdfText", "one"),
+                record("doc_1", "pdfText", "two"), record("doc_2", "pdfText", "three"));
+        filter.augmentAlgoliaRequest(request, this.asset);
+
+        assertEquals(List.of("doc_2"), request.getAlgoliaRecords().stream()
+                .map(AlgoliaRecord::getObjectID)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRecordsOfDeactivatedPagesAreSentAgain() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        when(this.resource.getPath()).thenReturn(PAGE_PATH);
+        deliver(filter, request(this.resource, record(PAGE_PATH, "title", "Page")), this.page);
+
+        filter.handleEvent(new ReplicationAction(ReplicationActionType.DEACTIVATE, PAGE_PATH).toEvent());
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testRecordsBuiltBelowADeactivatedPathAreSentAgainWhateverTheirObjectID() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record("page-1", PAGE_PATH + "/child")), this.page);
+        deliver(filter, request(record("page-2", PAGE_PATH + "2")), this.page);
+
+        filter.handleEvent(new ReplicationAction(ReplicationActionType.DEACTIVATE, PAGE_PATH).toEvent());
+        AlgoliaRequest request = request(record("page-1", PAGE_PATH + "/child"),
+                record("page-2", PAGE_PATH + "2"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(List.of("page-1"), request.getAlgoliaRecords().stream()
+                .map(AlgoliaRecord::getObjectID)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testChangedRecordsSentWithoutDeliveryReportForgetThePreviousDigest() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record(PAGE_PATH, "title", "Page")), this.page);
+        filter.augmentAlgoliaRequest(request(record(PAGE_PATH, "title", "Changed")), this.page);
+
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testDeletedRecordsAreSentAgain() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record("doc_0", "pdfText", "one"), record("doc_1", "pdfText", "two")), this.asset);
+
+        filter.deleted("doc");
+        AlgoliaRequest request = request(record("doc_0", "pdfText", "one"), record("doc_1", "pdfText", "two"));
+        filter.augmentAlgoliaRequest(request, this.asset);
+
+        assertEquals(2, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testVersionChangeSendsRecordsAgain() {
+        deliver(this.newFilter(true, "1"), request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        this.newFilter(true, "2").augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testModifiedVersionSendsRecordsAgain() {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        filter.modified(config(true, "2"));
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testModifiedMaxAgeKeepsTheStore() throws NoSuchFieldException {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record(PAGE_PATH, "title", "Page")), this.page);
+        Object store = store(filter);
+
+        filter.modified(config(true, "1", 24));
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertSame(store, store(filter));
+        assertEquals(0, request.getAlgoliaRecords().size());
+    }
+
+    @Test
+    void testFilteringIsRecordedWithItsOutcome() throws IOException {
+        UnchangedRecordFilter filter = this.newFilter(true, "1");
+        deliver(filter, request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        List<RecordedEvent> events = ExtenderExecutionTest.record(this.dataDirectory, () -> {
+            filter.augmentAlgoliaRequest(request(record(PAGE_PATH, "title", "Page")), this.page);
+            filter.augmentAlgoliaRequest(request(record(PAGE_PATH, "title", "Changed")), this.page);
+        });
+
+        assertEquals(List.of(ExtenderExecution.CACHE_HIT, ExtenderExecution.CACHE_MISS), events.stream()
+                .map(event -> event.getString("cacheOutcome"))
+                .collect(Collectors.toList()));
+        assertEquals(UnchangedRecordFilter.class.getName(), events.get(0).getString("extender"));
+    }
+
+    @Test
+    void testDisabledFilterKeepsAllRecords() {
+        UnchangedRecordFilter filter = this.newFilter(false, "1");
+        deliver(filter, request(record(PAGE_PATH, "title", "Page")), this.page);
+
+        AlgoliaRequest request = request(record(PAGE_PATH, "title", "Page"));
+        filter.augmentAlgoliaRequest(request, this.page);
+
+        assertEquals(1, request.getAlgoliaRecords().size());
+    }
+
+    /**
+     * Filters the request and reports the records left as delivered.
+     */
+    private static void deliver(UnchangedRecordFilter filter, AlgoliaRequest request, Asset asset) {
+        filter.augmentAlgoliaRequest(request, asset);
+        filter.delivered(request);
+    }
+
+    private static void deliver(UnchangedRecordFilter filter, AlgoliaRequest request, Page page) {
+        filter.augmentAlgoliaRequest(request, page);
+        filter.delivered(request);
+    }
+
+    private static Object store(UnchangedRecordFilter filter) throws NoSuchFieldException {
+        return PrivateAccessor.getField(PrivateAccessor.getField(filter, "settings"), "store");
+    }
+
+    private static AlgoliaRequest request(AlgoliaRecord... records) {
+        return request(null, records);
+    }
+
+    private static AlgoliaRequest request(Resource resource, AlgoliaRecord... records) {
+        // AlgoliaConfiguration is not used by the extractors, so we can pass null
+        AlgoliaRequest request = new AlgoliaRequest(resource, null);
+        for (AlgoliaRecord record : records) {
+            request.addRecord(record);
+        }
+        return request;
+    }
+
+    private static AlgoliaRecord record(String objectID, String attribute, Object value) {
+        AlgoliaRecord record = new AlgoliaRecord(objectID);
+        record.addAttribute(attribute, value);
+        return record;
+    }
+
+    private static AlgoliaRecord record(String objectID, String path) {
+        return record(objectID, ATTRIBUTE_PATH, path);
+    }
+
+    private UnchangedRecordFilter newFilter(boolean enabled, String version) {
+        return new UnchangedRecordFilter(MetricsService.NOOP, this.bundleContext, config(enabled, version));
+    }
+
+    private static UnchangedRecordFilter.Config config(boolean enabled, String version) {
+        return config(enabled, version, 168);
+    }
+
+    private static UnchangedRecordFilter.Config config(boolean enabled, String version, int maxAge) {
+        return new UnchangedRecordFilter.Config() {
+            @Override
+            public boolean enabled() {
+                return enabled;
+            }
+
+            @Override
+            public int max_age() {
+                return maxAge;
+            }
+
+            @Override
+            public String fingerprint_version() {
+                return version;
+            }
+
+            @Override
+            public long event_threshold() {
+                return 0;
+            }
+
+            @Override
+            public Class<? extends java.lang.annotation.Annotation> annotationType() {
+                return UnchangedRecordFilter.Config.class;
+            }
+        };
+    }
+}
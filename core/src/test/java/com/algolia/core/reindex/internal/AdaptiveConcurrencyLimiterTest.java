@@ -0,0 +1,60 @@
+package com.algolia.core.reindex.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test cases for {@link AdaptiveConcurrencyLimiter}
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicReference<Double> load = new AtomicReference<>(0.1);
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(1, 4, 1000, 0.75, this.load::get);
+
+    @Test
+    void testConcurrencyStartsAtMinimum() {
+        assertEquals(1, this.limiter.getConcurrency());
+    }
+
+    @Test
+    void testConcurrencyIncreasesUpToMaximumWhileHealthy() {
+        for (int i = 0; i < 10; i++) {
+            this.limiter.onBatchCompleted(100);
+        }
+
+        assertEquals(4, this.limiter.getConcurrency());
+    }
+
+    @Test
+    void testConcurrencyIsHalvedWhenLatencyExceedsTarget() {
+        for (int i = 0; i < 3; i++) {
+            this.limiter.onBatchCompleted(100);
+        }
+
+        assertEquals(2, this.limiter.onBatchCompleted(1500));
+        assertEquals(1, this.limiter.onBatchCompleted(1500));
+        assertEquals(1, this.limiter.onBatchCompleted(1500));
+    }
+
+    @Test
+    void testConcurrencyIsHalvedWhenSystemIsOverloaded() {
+        for (int i = 0; i < 3; i++) {
+            this.limiter.onBatchCompleted(100);
+        }
+        this.load.set(1.5);
+
+        assertEquals(2, this.limiter.onBatchCompleted(100));
+    }
+
+    @Test
+    void testUnavailableLoadIsIgnored() {
+        this.load.set(-1.0);
+
+        assertEquals(2, this.limiter.onBatchCompleted(100));
+    }
+}
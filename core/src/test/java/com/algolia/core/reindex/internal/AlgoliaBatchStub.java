@@ -0,0 +1,233 @@
+package com.algolia.core.reindex.internal;
+
+import com.algolia.connector.core.domain.AlgoliaRecord;
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP stand-in for the Algolia batch endpoint ({@code POST /1/indexes/{index}/batch}), registered as the
+ * {@link BulkReindexRequestConsumer} of a bulk reindex.
+ * <p>
+ * Every accepted request is sent to the endpoint as one batch holding its records, from the reindex worker calling
+ * the consumer. The endpoint answers after a fixed latency, with 413 for bodies over the payload limit and with 429
+ * for every n-th request. A throttled batch is sent again after an exponential backoff, a batch answered with 413
+ * fails the request, so that the reindex counts its resource as failed. Accepted records are counted by objectID.
+ */
+final class AlgoliaBatchStub implements BulkReindexRequestConsumer, AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String BATCH_PATH = "/1/indexes/";
+
+    private static final byte[] ACCEPTED = "{\"taskID\":1,\"objectIDs\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private static final int MAX_RETRIES = 10;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final URI endpoint;
+
+    private final long latencyMillis;
+
+    private final long maxPayloadBytes;
+
+    private final int throttleEvery;
+
+    private final long backoffMillis;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final AtomicInteger payloadTooLarge = new AtomicInteger();
+
+    private final AtomicInteger throttled = new AtomicInteger();
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    private final AtomicLong backoffNanos = new AtomicLong();
+
+    private final Set<String> objectIDs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param latencyMillis   time taken by every request
+     * @param maxPayloadBytes bodies over this size are answered with 413
+     * @param throttleEvery   every n-th request is answered with 429, 0 to never throttle
+     * @param backoffMillis   initial backoff after a 429 response, doubled on every retry
+     */
+    AlgoliaBatchStub(long latencyMillis, long maxPayloadBytes, int throttleEvery, long backoffMillis)
+            throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.throttleEvery = throttleEvery;
+        this.backoffMillis = backoffMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.createContext(BATCH_PATH, this::handle);
+        this.server.start();
+        this.endpoint = URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + this.server.getAddress().getPort() + BATCH_PATH + "perf/batch");
+    }
+
+    /**
+     * Sends the records of the request as one batch, retrying it while throttled.
+     *
+     * @throws IllegalStateException if the batch was rejected or is still throttled after the last retry
+     */
+    @Override
+    public void accept(AlgoliaRequest request) {
+        byte[] payload = payload(request);
+        try {
+            for (int attempt = 0; attempt <= MAX_RETRIES; attempt++) {
+                HttpResponse<Void> response = this.httpClient.send(HttpRequest.newBuilder(this.endpoint)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                } else if (response.statusCode() != 429) {
+                    throw new IllegalStateException("Batch rejected with status " + response.statusCode());
+                }
+                long start = System.nanoTime();
+                Thread.sleep(this.backoffMillis << attempt);
+                this.backoffNanos.addAndGet(System.nanoTime() - start);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending a batch.", ex);
+        }
+        throw new IllegalStateException("Batch still throttled after " + MAX_RETRIES + " retries.");
+    }
+
+    /**
+     * Number of HTTP requests received, retries included.
+     */
+    int getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Number of batches accepted.
+     */
+    int getBatches() {
+        return this.batches.get();
+    }
+
+    int getPayloadTooLarge() {
+        return this.payloadTooLarge.get();
+    }
+
+    int getThrottled() {
+        return this.throttled.get();
+    }
+
+    long getBytesReceived() {
+        return this.bytesReceived.get();
+    }
+
+    long getBackoffMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.backoffNanos.get());
+    }
+
+    /**
+     * ObjectIDs of the records of every accepted batch.
+     */
+    Set<String> getObjectIDs() {
+        return this.objectIDs;
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] payload = body.readAllBytes();
+            int request = this.requests.incrementAndGet();
+            this.bytesReceived.addAndGet(payload.length);
+            sleep(this.latencyMillis);
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/batch")) {
+                respond(exchange, 404, null);
+            } else if (payload.length > this.maxPayloadBytes) {
+                this.payloadTooLarge.incrementAndGet();
+                respond(exchange, 413, null);
+            } else if (this.throttleEvery > 0 && request % this.throttleEvery == 0) {
+                this.throttled.incrementAndGet();
+                respond(exchange, 429, null);
+            } else {
+                for (JsonNode operation : MAPPER.readTree(payload).path("requests")) {
+                    this.objectIDs.add(operation.path("body").path("objectID").asText());
+                }
+                this.batches.incrementAndGet();
+                respond(exchange, 200, ACCEPTED);
+            }
+        }
+    }
+
+    private static byte[] payload(AlgoliaRequest request) {
+        ObjectNode payload = MAPPER.createObjectNode();
+        ArrayNode operations = payload.putArray("requests");
+        for (AlgoliaRecord algoliaRecord : request.getAlgoliaRecords()) {
+            ObjectNode operation = operations.addObject();
+            operation.put("action", "updateObject");
+            operation.set("body", MAPPER.valueToTree(algoliaRecord));
+        }
+        try {
+            return MAPPER.writeValueAsBytes(payload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        if (body != null) {
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
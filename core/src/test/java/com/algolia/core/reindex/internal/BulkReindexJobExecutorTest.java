@@ -0,0 +1,392 @@
+package com.algolia.core.reindex.internal;
+
+import com.algolia.connector.core.AlgoliaConstants;
+import com.algolia.connector.core.domain.AlgoliaRequest;
+import com.algolia.connector.core.extender.AlgoliaAssetRequestExtender;
+import com.algolia.connector.core.extender.AlgoliaPageRequestExtender;
+import com.algolia.core.extender.RecordDeliveryListener;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import com.day.cq.dam.api.Asset;
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.wcm.api.NameConstants;
+import com.day.cq.wcm.api.Page;
+import junitx.util.PrivateAccessor;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.event.jobs.consumer.JobExecutionResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for {@link BulkReindexJobExecutor}
+ */
+@ExtendWith(MockitoExtension.class)
+class BulkReindexJobExecutorTest {
+
+    private static final String ROOT = "/content/dam/test";
+
+    @Mock
+    private ResourceResolverFactory resolverFactory;
+
+    @Mock
+    private ResourceResolver resolver;
+
+    @Mock
+    private BundleContext bundleContext;
+
+    @Mock
+    private Job job;
+
+    @Mock
+    private JobExecutionContext context;
+
+    @Mock
+    private JobExecutionContext.ResultBuilder resultBuilder;
+
+    @Mock
+    private AlgoliaAssetRequestExtender assetExtender;
+
+    @Mock
+    private AlgoliaPageRequestExtender pageExtender;
+
+    @TempDir
+    File dataDirectory;
+
+    private final List<String> consumed = Collections.synchronizedList(new ArrayList<>());
+
+    private final CountDownLatch pageConsumed = new CountDownLatch(1);
+
+    private BulkReindexCheckpoints checkpoints;
+
+    private BulkReindexJobExecutor executor;
+
+    @BeforeEach
+    void setup() throws Exception {
+        File checkpointsDirectory = new File(this.dataDirectory, BulkReindexJobExecutor.CHECKPOINTS_DIRECTORY);
+        when(this.bundleContext.getDataFile(BulkReindexJobExecutor.CHECKPOINTS_DIRECTORY))
+                .thenReturn(checkpointsDirectory);
+        this.checkpoints = new BulkReindexCheckpoints(checkpointsDirectory);
+        this.executor = this.createExecutor(new TestConfig());
+
+        lenient().when(this.resolverFactory.getServiceResourceResolver(anyMap())).thenReturn(this.resolver);
+        lenient().when(this.job.getProperty(BulkReindexJobExecutor.PN_PATH, String.class)).thenReturn(ROOT);
+        lenient().when(this.context.result()).thenReturn(this.resultBuilder);
+        lenient().when(this.resultBuilder.message(anyString())).thenReturn(this.resultBuilder);
+
+        Resource root = this.resource(ROOT, "sling:Folder");
+        Resource first = this.resource(ROOT + "/first.pdf", DamConstants.NT_DAM_ASSET);
+        Resource folder = this.resource(ROOT + "/folder", "sling:Folder");
+        Resource second = this.resource(ROOT + "/folder/second.pdf", DamConstants.NT_DAM_ASSET);
+        Resource page = this.resource(ROOT + "/folder/page", NameConstants.NT_PAGE);
+        Resource content = this.resource(ROOT + "/folder/page/jcr:content", "cq:PageContent");
+        lenient().when(root.listChildren()).thenAnswer(invocation -> Arrays.asList(first, folder).iterator());
+        lenient().when(folder.listChildren()).thenAnswer(invocation -> Arrays.asList(second, page).iterator());
+        lenient().when(page.listChildren()).thenAnswer(invocation -> Collections.singletonList(content).iterator());
+        lenient().when(first.adaptTo(Asset.class)).thenReturn(mock(Asset.class));
+        lenient().when(second.adaptTo(Asset.class)).thenReturn(mock(Asset.class));
+        lenient().when(page.adaptTo(Page.class)).thenReturn(mock(Page.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.deactivate();
+    }
+
+    @Test
+    void testAssetExtendersRunInDescendingRankingWithPathOnBaseRecord() {
+        AlgoliaAssetRequestExtender finalStage = mock(AlgoliaAssetRequestExtender.class);
+        this.executor.unbindAssetExtender(this.assetExtender, serviceProperties(1, 0));
+        this.executor.bindAssetExtender(finalStage, serviceProperties(3, Integer.MIN_VALUE));
+        this.executor.bindAssetExtender(this.assetExtender, serviceProperties(1, 0));
+        when(this.resultBuilder.succeeded()).thenReturn(mock(JobExecutionResult.class));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> order.add("extender")).when(this.assetExtender)
+                .augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Asset.class));
+        doAnswer(invocation -> {
+            AlgoliaRequest request = invocation.getArgument(0);
+            assertEquals(request.getResource().getPath(),
+                    request.getAlgoliaRecords().get(0).get(AlgoliaConstants.ATTRIBUTE_PATH));
+            return order.add("final");
+        }).when(finalStage).augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Asset.class));
+
+        this.executor.process(this.job, this.context);
+
+        assertEquals(Arrays.asList("extender", "final", "extender", "final"), order);
+    }
+
+    @Test
+    void testReindexRunsExtendersForEveryPageAndAsset() {
+        JobExecutionResult succeeded = mock(JobExecutionResult.class);
+        when(this.resultBuilder.succeeded()).thenReturn(succeeded);
+
+        assertEquals(succeeded, this.executor.process(this.job, this.context));
+
+        assertEquals(Arrays.asList(ROOT + "/first.pdf", ROOT + "/folder/second.pdf", ROOT + "/folder/page"),
+                this.consumed);
+        verify(this.assetExtender, times(2))
+                .augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Asset.class));
+        verify(this.pageExtender).augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Page.class));
+        assertNull(this.checkpoints.get(ROOT));
+    }
+
+    @Test
+    void testRecordsAreReportedAsDeliveredOnceEveryConsumerAcceptedThem() throws NoSuchFieldException {
+        when(this.resultBuilder.succeeded()).thenReturn(mock(JobExecutionResult.class));
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+        RecordDeliveryListener listener = mock(RecordDeliveryListener.class);
+        doAnswer(invocation -> delivered.add(invocation.<AlgoliaRequest>getArgument(0).getResource().getPath()))
+                .when(listener).delivered(any(AlgoliaRequest.class));
+        addReference(this.executor, "deliveryListeners", listener);
+        addReference(this.executor, "consumers", (BulkReindexRequestConsumer) request -> {
+            if (request.getResource().isResourceType(NameConstants.NT_PAGE)) {
+                throw new IllegalStateException("not delivered");
+            }
+        });
+
+        this.executor.process(this.job, this.context);
+
+        assertEquals(Arrays.asList(ROOT + "/first.pdf", ROOT + "/folder/second.pdf"), delivered);
+    }
+
+    @Test
+    void testPausedReindexResumesAfterCheckpoint() {
+        JobExecutionResult cancelled = mock(JobExecutionResult.class);
+        when(this.resultBuilder.cancelled()).thenReturn(cancelled);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        when(this.context.isStopped()).thenAnswer(invocation -> {
+            if (secondStarted.getCount() == 0) {
+                stopped.countDown();
+            }
+            return stopped.getCount() == 0;
+        });
+        // the job is stopped while the second asset runs, the page is not walked yet
+        Asset secondAsset = mock(Asset.class);
+        when(this.resolver.getResource(ROOT + "/folder/second.pdf").adaptTo(Asset.class)).thenReturn(secondAsset);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(1) == secondAsset) {
+                secondStarted.countDown();
+                assertTrue(stopped.await(10, TimeUnit.SECONDS));
+            }
+            return null;
+        }).when(this.assetExtender).augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Asset.class));
+
+        assertEquals(cancelled, this.executor.process(this.job, this.context));
+
+        BulkReindexCheckpoints.Checkpoint checkpoint = this.checkpoints.get(ROOT);
+        assertNotNull(checkpoint);
+        assertEquals(ROOT + "/folder/second.pdf", checkpoint.lastPath);
+        assertEquals(2, checkpoint.processed);
+
+        when(this.context.isStopped()).thenReturn(false);
+        when(this.resultBuilder.succeeded()).thenReturn(mock(JobExecutionResult.class));
+        this.consumed.clear();
+        this.executor.process(this.job, this.context);
+
+        assertEquals(Collections.singletonList(ROOT + "/folder/page"), this.consumed);
+        assertNull(this.checkpoints.get(ROOT));
+    }
+
+    @Test
+    void testResourcesLeftByFailedWorkersFailTheJobWithoutCheckpoint() throws LoginException {
+        JobExecutionResult failed = mock(JobExecutionResult.class);
+        when(this.resultBuilder.failed()).thenReturn(failed);
+        // the job itself logs in, its workers cannot
+        when(this.resolverFactory.getServiceResourceResolver(anyMap()))
+                .thenReturn(this.resolver)
+                .thenThrow(new LoginException("no service user"));
+
+        assertEquals(failed, this.executor.process(this.job, this.context));
+
+        assertEquals(Collections.emptyList(), this.consumed);
+        assertNull(this.checkpoints.get(ROOT));
+    }
+
+    @Test
+    void testPageOvertakesLargePdfsWalkedBeforeIt() throws Exception {
+        this.executor.deactivate();
+        TestConfig config = new TestConfig();
+        config.concurrency = 2;
+        config.queueSize = 3;
+        this.executor = this.createExecutor(config);
+        when(this.resultBuilder.succeeded()).thenReturn(mock(JobExecutionResult.class));
+        ValueMap largePdf = new ValueMapDecorator(new HashMap<>());
+        largePdf.put(DamConstants.DAM_SIZE, 30L * 1024 * 1024);
+        largePdf.put(DamConstants.DC_FORMAT, "application/pdf");
+        Resource metadata = mock(Resource.class);
+        when(metadata.getValueMap()).thenReturn(largePdf);
+        Asset firstAsset = mock(Asset.class);
+        Resource first = this.resolver.getResource(ROOT + "/first.pdf");
+        when(first.adaptTo(Asset.class)).thenReturn(firstAsset);
+        when(first.getChild("jcr:content/metadata")).thenReturn(metadata);
+        when(this.resolver.getResource(ROOT + "/folder/second.pdf").getChild("jcr:content/metadata"))
+                .thenReturn(metadata);
+        // the large lane admits one PDF at a time, the first one runs until the page is through
+        doAnswer(invocation -> {
+            if (invocation.getArgument(1) == firstAsset) {
+                assertTrue(this.pageConsumed.await(10, TimeUnit.SECONDS));
+            }
+            return null;
+        }).when(this.assetExtender).augmentAlgoliaRequest(any(AlgoliaRequest.class), any(Asset.class));
+
+        this.executor.process(this.job, this.context);
+
+        assertEquals(Arrays.asList(ROOT + "/folder/page", ROOT + "/first.pdf", ROOT + "/folder/second.pdf"),
+                this.consumed);
+        assertNull(this.checkpoints.get(ROOT));
+    }
+
+    private BulkReindexJobExecutor createExecutor(TestConfig config) throws NoSuchFieldException {
+        BulkReindexJobExecutor created = new BulkReindexJobExecutor(this.resolverFactory, MetricsService.NOOP,
+                this.bundleContext, config);
+        created.bindAssetExtender(this.assetExtender, serviceProperties(1, 0));
+        created.bindPageExtender(this.pageExtender, serviceProperties(2, 0));
+        BulkReindexRequestConsumer consumer = request -> {
+            this.consumed.add(request.getResource().getPath());
+            if (request.getResource().isResourceType(NameConstants.NT_PAGE)) {
+                this.pageConsumed.countDown();
+            }
+        };
+        addReference(created, "consumers", consumer);
+        return created;
+    }
+
+    private Resource resource(String path, String type) {
+        Resource resource = mock(Resource.class);
+        lenient().when(resource.getPath()).thenReturn(path);
+        lenient().when(resource.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        lenient().when(resource.isResourceType(anyString()))
+                .thenAnswer(invocation -> type.equals(invocation.getArgument(0)));
+        lenient().when(resource.getResourceResolver()).thenReturn(this.resolver);
+        lenient().when(resource.listChildren()).thenAnswer(invocation -> Collections.emptyIterator());
+        lenient().when(this.resolver.getResource(path)).thenReturn(resource);
+        return resource;
+    }
+
+    private static Map<String, Object> serviceProperties(long id, int ranking) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(Constants.SERVICE_ID, id);
+        properties.put(Constants.SERVICE_RANKING, ranking);
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void addReference(BulkReindexJobExecutor executor, String field, T service)
+            throws NoSuchFieldException {
+        ((List<T>) PrivateAccessor.getField(executor, field)).add(service);
+    }
+
+    /**
+     * {@link BulkReindexJobExecutor.Config} processing two resources per batch on a single worker, walking one
+     * resource ahead by default.
+     */
+    private static class TestConfig implements BulkReindexJobExecutor.Config {
+
+        private int concurrency = 1;
+
+        private int queueSize = 1;
+
+        @Override
+        public int batch_size() {
+            return 2;
+        }
+
+        @Override
+        public int queue_size() {
+            return this.queueSize;
+        }
+
+        @Override
+        public int min_concurrency() {
+            return this.concurrency;
+        }
+
+        @Override
+        public int max_concurrency() {
+            return this.concurrency;
+        }
+
+        @Override
+        public long target_latency() {
+            return 2000;
+        }
+
+        @Override
+        public double max_load_factor() {
+            return 0.75;
+        }
+
+        @Override
+        public int medium_lane_concurrency() {
+            return 1;
+        }
+
+        @Override
+        public int large_lane_concurrency() {
+            return 1;
+        }
+
+        @Override
+        public long lane_aging() {
+            return 30000;
+        }
+
+        @Override
+        public long medium_asset_size() {
+            return 1;
+        }
+
+        @Override
+        public long large_asset_size() {
+            return 20;
+        }
+
+        @Override
+        public long large_page_count() {
+            return 200;
+        }
+
+        @Override
+        public Class<? extends java.lang.annotation.Annotation> annotationType() {
+            return BulkReindexJobExecutor.Config.class;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.algolia.core.reindex.internal;
+
+import com.algolia.connector.core.PdfTextExtractor;
+import com.algolia.connector.core.TagsParserService;
+import com.algolia.connector.core.domain.AlgoliaRecord;
+import com.algolia.core.extender.internal.DefaultAlgoliaPdfTextExtractor;
+import com.algolia.core.extender.internal.DefaultAlgoliaTagsExtractor;
+import com.algolia.core.extender.internal.UnchangedRecordFilter;
+import com.algolia.core.reindex.BulkReindexRequestConsumer;
+import com.day.cq.dam.api.Asset;
+import io.wcm.testing.mock.aem.junit5.AemContext;
+import io.wcm.testing.mock.aem.junit5.AemContextExtension;
+import junitx.util.PrivateAccessor;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.metrics.MetricsService;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.Constants;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Offline end-to-end indexing throughput of aem-mock pages and PDF assets, reindexed by the
+ * {@link BulkReindexJobExecutor} through the real extenders into an {@link AlgoliaBatchStub}.
+ * <p>
+ * Every scenario publishes records/s, the number and average size of the batches, the bytes on the wire and the
+ * 413 and 429 responses as JUnit report entries, and checks which records reached the stub. Timings are reported,
+ * not asserted. The suite is excluded from the default build and run with {@code mvn test -Pperformance}.
+ */
+@Tag("performance")
+@ExtendWith(AemContextExtension.class)
+class IndexingThroughputTest {
+
+    private static final String ROOT = "/content";
+
+    private static final String SITE = ROOT + "/site";
+
+    private static final String DAM = ROOT + "/dam/site";
+
+    private static final String MIME_TYPE_PDF = "application/pdf";
+
+    private static final int PAGES = 500;
+
+    private static final int PDFS = 100;
+
+    private static final int SMALL_PDF_WORDS = 300;
+
+    private static final int LARGE_PDF_WORDS = 6000;
+
+    private static final long LATENCY_MILLIS = 5;
+
+    private static final long BACKOFF_MILLIS = 20;
+
+    private static final String[] VOCABULARY = {"torque", "wrench", "calibration", "engine", "maintenance",
+            "procedure", "safety", "valve", "pressure", "assembly", "inspection", "manual", "warranty", "service",
+            "component", "replacement", "interval", "specification", "lubricant", "bearing"};
+
+    private final AemContext context = new AemContext();
+
+    private final Set<String> paths = new HashSet<>();
+
+    private TestReporter reporter;
+
+    @BeforeEach
+    void setup(TestReporter testReporter) throws PersistenceException {
+        this.reporter = testReporter;
+        Map<String, Object> properties = Collections.singletonMap("cq:tags",
+                new String[]{"site:products/tools", "site:topics/maintenance"});
+        for (int i = 0; i < PAGES; i++) {
+            this.paths.add(this.context.create().page(SITE + "/page-" + i, null, properties).getPath());
+        }
+        for (int i = 0; i < PDFS; i++) {
+            this.paths.add(this.context.create().asset(DAM + "/document-" + i + ".pdf",
+                    new ByteArrayInputStream(("%PDF-1.7 " + i).getBytes(StandardCharsets.UTF_8)),
+                    MIME_TYPE_PDF).getPath());
+        }
+        this.context.resourceResolver().commit();
+    }
+
+    @Test
+    void testBaselineThroughput() throws Exception {
+        try (AlgoliaBatchStub stub = new AlgoliaBatchStub(LATENCY_MILLIS, Long.MAX_VALUE, 0, BACKOFF_MILLIS)) {
+            String result = this.reindex("baseline", stub, SMALL_PDF_WORDS);
+
+            assertTrue(result.contains("(0 failed)"), result);
+            assertEquals(this.paths, stub.getObjectIDs());
+        }
+    }
+
+    @Test
+    void testSplitRecordsIncreaseRecordsAndBytes() throws Exception {
+        try (AlgoliaBatchStub small = new AlgoliaBatchStub(LATENCY_MILLIS, Long.MAX_VALUE, 0, BACKOFF_MILLIS);
+             AlgoliaBatchStub large = new AlgoliaBatchStub(LATENCY_MILLIS, Long.MAX_VALUE, 0, BACKOFF_MILLIS)) {
+            this.reindex("small PDFs", small, SMALL_PDF_WORDS);
+            String result = this.reindex("split PDFs", large, LARGE_PDF_WORDS);
+
+            assertTrue(result.contains("(0 failed)"), result);
+            assertEquals(small.getBatches(), large.getBatches());
+            assertTrue(large.getObjectIDs().size() > small.getObjectIDs().size());
+            assertTrue(large.getBytesReceived() > small.getBytesReceived());
+        }
+    }
+
+    @Test
+    void testThrottlingDelaysButDeliversEveryRecord() throws Exception {
+        try (AlgoliaBatchStub stub = new AlgoliaBatchStub(LATENCY_MILLIS, Long.MAX_VALUE, 3, BACKOFF_MILLIS)) {
+            String result = this.reindex("throttled every 3rd request", stub, SMALL_PDF_WORDS);
+
+            assertTrue(result.contains("(0 failed)"), result);
+            assertTrue(stub.getThrottled() > 0);
+            assertEquals(this.paths, stub.getObjectIDs());
+        }
+    }
+
+    @Test
+    void testPayloadTooLargeFailsOnlyTheLargeResources() throws Exception {
+        try (AlgoliaBatchStub stub = new AlgoliaBatchStub(LATENCY_MILLIS, 32 * 1024, 0, BACKOFF_MILLIS)) {
+            String result = this.reindex("413 over 32 KB", stub, LARGE_PDF_WORDS);
+
+            assertTrue(result.contains("(" + PDFS + " failed)"), result);
+            assertEquals(PDFS, stub.getPayloadTooLarge());
+            assertEquals(PAGES, stub.getObjectIDs().size());
+        }
+    }
+
+    /**
+     * Reindexes the pages and assets below {@link #ROOT} with the default job configuration and publishes the
+     * figures of the scenario.
+     *
+     * @return the message of the job result
+     */
+    private String reindex(String scenario, AlgoliaBatchStub stub, int pdfWords) throws Exception {
+        ResourceResolverFactory resolverFactory = this.context.getService(ResourceResolverFactory.class);
+        PdfTextExtractor pdfTextExtractor = mock(PdfTextExtractor.class);
+        when(pdfTextExtractor.extractText(any(Asset.class))).thenAnswer(invocation -> text(
+                invocation.getArgument(0, Asset.class).getPath().hashCode(), pdfWords));
+        TagsParserService tagsParserService = mock(TagsParserService.class);
+        doAnswer(invocation -> {
+            Resource content = invocation.getArgument(0, Resource.class).getChild(JcrConstants.JCR_CONTENT);
+            invocation.getArgument(1, AlgoliaRecord.class).addAttribute("_tags",
+                    content.getValueMap().get(invocation.getArgument(2, String.class), new String[0]));
+            return null;
+        }).when(tagsParserService).parse(any(Resource.class), any(AlgoliaRecord.class), anyString());
+        DefaultAlgoliaTagsExtractor tagsExtractor = new DefaultAlgoliaTagsExtractor(tagsParserService,
+                MetricsService.NOOP, this.context.bundleContext(), config(DefaultAlgoliaTagsExtractor.Config.class));
+        DefaultAlgoliaPdfTextExtractor pdfTextExtender = new DefaultAlgoliaPdfTextExtractor(resolverFactory,
+                pdfTextExtractor, MetricsService.NOOP, this.context.bundleContext(),
+                config(DefaultAlgoliaPdfTextExtractor.Config.class));
+        UnchangedRecordFilter filter = new UnchangedRecordFilter(MetricsService.NOOP, this.context.bundleContext(),
+                config(UnchangedRecordFilter.Config.class));
+
+        BulkReindexJobExecutor executor = new BulkReindexJobExecutor(resolverFactory, MetricsService.NOOP,
+                this.context.bundleContext(), config(BulkReindexJobExecutor.Config.class));
+        executor.bindPageExtender(tagsExtractor, serviceProperties(1, 0));
+        executor.bindPageExtender(filter, serviceProperties(2, Integer.MIN_VALUE));
+        executor.bindAssetExtender(pdfTextExtender, serviceProperties(3, 0));
+        executor.bindAssetExtender(tagsExtractor, serviceProperties(1, 0));
+        executor.bindAssetExtender(filter, serviceProperties(2, Integer.MIN_VALUE));
+        addReference(executor, "consumers", stub);
+        Job job = mock(Job.class);
+        when(job.getProperty(BulkReindexJobExecutor.PN_PATH, String.class)).thenReturn(ROOT);
+        JobExecutionContext jobContext = mock(JobExecutionContext.class);
+        JobExecutionContext.ResultBuilder resultBuilder = mock(JobExecutionContext.ResultBuilder.class, RETURNS_SELF);
+        when(jobContext.result()).thenReturn(resultBuilder);
+
+        long start = System.nanoTime();
+        try {
+            executor.process(job, jobContext);
+        } finally {
+            executor.deactivate();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(resultBuilder).message(message.capture());
+        verify(resultBuilder).succeeded();
+        this.report(scenario, stub, elapsedMillis, message.getValue());
+        return message.getValue();
+    }
+
+    private void report(String scenario, AlgoliaBatchStub stub, long elapsedMillis, String result) {
+        int records = stub.getObjectIDs().size();
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("scenario", scenario);
+        entries.put("records", String.valueOf(records));
+        entries.put("elapsedMillis", String.valueOf(elapsedMillis));
+        entries.put("recordsPerSecond", String.format("%.0f", records * 1000.0 / Math.max(1, elapsedMillis)));
+        entries.put("requests", String.valueOf(stub.getRequests()));
+        entries.put("recordsPerBatch", String.format("%.1f", records / (double) Math.max(1, stub.getBatches())));
+        entries.put("bytesOnTheWire", String.valueOf(stub.getBytesReceived()));
+        entries.put("payloadTooLarge", String.valueOf(stub.getPayloadTooLarge()));
+        entries.put("throttled", String.valueOf(stub.getThrottled()));
+        entries.put("backoffMillis", String.valueOf(stub.getBackoffMillis()));
+        entries.put("result", result);
+        this.reporter.publishEntry(entries);
+    }
+
+    private static String text(long seed, int words) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Returns an instance of the given OSGi configuration type returning the default of every attribute.
+     */
+    private static <T extends Annotation> T config(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> "annotationType".equals(method.getName())
+                        ? type : method.getDefaultValue()));
+    }
+
+    private static Map<String, Object> serviceProperties(long id, int ranking) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(Constants.SERVICE_ID, id);
+        properties.put(Constants.SERVICE_RANKING, ranking);
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addReference(BulkReindexJobExecutor executor, String field,
+                                     BulkReindexRequestConsumer consumer) throws NoSuchFieldException {
+        ((List<BulkReindexRequestConsumer>) PrivateAccessor.getField(executor, field)).add(consumer);
+    }
+}
@@ -0,0 +1,98 @@
+package com.algolia.core.reindex.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.LARGE;
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.MEDIUM;
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.SMALL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Test cases for {@link PriorityLaneScheduler}
+ */
+class PriorityLaneSchedulerTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void testCheapTasksAreTakenFirst() throws InterruptedException {
+        PriorityLaneScheduler<String> scheduler = new PriorityLaneScheduler<>(new int[]{4, 4, 4}, 0,
+                this.nanoTime::get);
+        scheduler.add("large", LARGE);
+        scheduler.add("medium", MEDIUM);
+        scheduler.add("small1", SMALL);
+        scheduler.add("small2", SMALL);
+
+        assertEquals("small1", scheduler.take().task);
+        assertEquals("small2", scheduler.take().task);
+        assertEquals("medium", scheduler.take().task);
+        assertEquals("large", scheduler.take().task);
+        scheduler.close();
+        assertNull(scheduler.take());
+    }
+
+    @Test
+    void testTakeWaitsForTasksAddedLater() throws InterruptedException {
+        PriorityLaneScheduler<String> scheduler = new PriorityLaneScheduler<>(new int[]{4, 4, 4}, 0,
+                this.nanoTime::get);
+
+        new Thread(() -> scheduler.add("small", SMALL)).start();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("small", scheduler.take().task));
+        assertEquals(List.of(), scheduler.cancel());
+        assertNull(scheduler.take());
+    }
+
+    @Test
+    void testConcurrencyCapsRunningTasksAcrossLanes() throws InterruptedException {
+        PriorityLaneScheduler<String> scheduler = new PriorityLaneScheduler<>(new int[]{4, 4, 4}, 0,
+                this.nanoTime::get);
+        scheduler.setConcurrency(1);
+        scheduler.add("small", SMALL);
+        scheduler.add("medium", MEDIUM);
+        PriorityLaneScheduler.Ticket<String> small = scheduler.take();
+
+        new Thread(() -> scheduler.setConcurrency(2)).start();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("medium", scheduler.take().task));
+        scheduler.complete(small);
+    }
+
+    @Test
+    void testLaneLimitLetsCheaperLanesPass() throws InterruptedException {
+        PriorityLaneScheduler<String> scheduler = new PriorityLaneScheduler<>(new int[]{4, 4, 1}, 0,
+                this.nanoTime::get);
+        scheduler.add("large1", LARGE);
+        scheduler.add("large2", LARGE);
+        scheduler.add("small", SMALL);
+
+        assertEquals("small", scheduler.take().task);
+        PriorityLaneScheduler.Ticket<String> large = scheduler.take();
+        assertEquals("large1", large.task);
+
+        // the second large task waits for the first one to complete
+        new Thread(() -> scheduler.complete(large)).start();
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertEquals("large2", scheduler.take().task));
+    }
+
+    @Test
+    void testWaitingTasksArePromoted() throws InterruptedException {
+        PriorityLaneScheduler<String> scheduler = new PriorityLaneScheduler<>(new int[]{4, 4, 4}, 1000,
+                this.nanoTime::get);
+        scheduler.add("large", LARGE);
+        this.nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        scheduler.add("small", SMALL);
+
+        // waited two aging intervals, the large task now ranks like a small one and was queued first
+        assertEquals("large", scheduler.take().task);
+        assertEquals("small", scheduler.take().task);
+    }
+}
@@ -0,0 +1,64 @@
+package com.algolia.core.reindex.internal;
+
+import com.day.cq.dam.api.DamConstants;
+import com.day.cq.wcm.api.NameConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.LARGE;
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.MEDIUM;
+import static com.algolia.core.reindex.internal.PriorityLaneScheduler.Lane.SMALL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for {@link ResourceCostEstimator}
+ */
+class ResourceCostEstimatorTest {
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    private final ResourceCostEstimator estimator = new ResourceCostEstimator(MEGABYTE, 20 * MEGABYTE, 200);
+
+    @Test
+    void testPagesAreSmall() {
+        Resource page = mock(Resource.class);
+        when(page.isResourceType(NameConstants.NT_PAGE)).thenReturn(true);
+
+        assertEquals(SMALL, this.estimator.estimate(page));
+    }
+
+    @Test
+    void testAssetsAreClassifiedBySizeFormatAndPageCount() {
+        assertEquals(SMALL, this.estimator.estimate(asset("image/png", 100 * 1024L, 0)));
+        assertEquals(MEDIUM, this.estimator.estimate(asset("image/png", 2 * MEGABYTE, 0)));
+        assertEquals(MEDIUM, this.estimator.estimate(asset("application/pdf", 100 * 1024L, 10)));
+        assertEquals(LARGE, this.estimator.estimate(asset("application/pdf", 100 * 1024L, 500)));
+        assertEquals(LARGE, this.estimator.estimate(asset("video/mp4", 50 * MEGABYTE, 0)));
+    }
+
+    @Test
+    void testAssetsWithoutMetadataAreSmall() {
+        assertEquals(SMALL, this.estimator.estimate(mock(Resource.class)));
+    }
+
+    private static Resource asset(String format, long size, long pageCount) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(DamConstants.DC_FORMAT, format);
+        properties.put(DamConstants.DAM_SIZE, size);
+        properties.put(ResourceCostEstimator.PN_PAGE_COUNT, pageCount);
+        Resource metadata = mock(Resource.class);
+        when(metadata.getValueMap()).thenReturn(new ValueMapDecorator(properties));
+        Resource asset = mock(Resource.class);
+        lenient().when(asset.isResourceType(anyString())).thenReturn(false);
+        when(asset.getChild("jcr:content/metadata")).thenReturn(metadata);
+        return asset;
+    }
+}